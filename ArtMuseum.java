@@ -1,14 +1,172 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * This class models the Artwork Gallery implemented as a binary search tree. The search criteria
  * include the year of creation of the artwork, the name of the artwork and its cost.
  *
  */
-public class ArtMuseum {
+public class ArtMuseum implements Iterable<Artwork> {
+  // subtree size below which a parallel scan does not split its task further
+  private static final int PARALLEL_SCAN_GRAIN = 1 << 13;
+  // estimated cost of starting a parallel scan, in node visits on the calling thread
+  private static final double PARALLEL_SCAN_STARTUP_COST = 50_000;
   private BSTNode<Artwork> root; // root node of the artwork catalog BST
   private int size; // size of the artwork catalog tree
+  private Artwork bestArtwork; // largest artwork in the catalog, null if empty
+  private Artwork oldestArtwork; // smallest artwork in the catalog, null if empty
+  private final boolean selfAdjusting; // true if accessed artworks are splayed to the root
+  private ArtworkBloomFilter bloomFilter; // filters out lookups of missing artworks, may be null
+  private double bloomFalsePositiveRate; // target false positive rate of the bloom filter
+  private double bloomRebuildRatio; // ratio of stale entries which triggers a rebuild
+  private int bloomStaleCount; // number of artworks bought since the bloom filter was built
+  // subscriptions to the changes of this museum, copied on write since listeners may subscribe or
+  // unsubscribe while events are delivered
+  private final CopyOnWriteArrayList<CatalogSubscription> subscriptions =
+    new CopyOnWriteArrayList<CatalogSubscription>();
+  private long lastSequence; // sequence number of the last catalog event of this museum
+  private double autoRebalanceFactor; // rebalance once height > factor * log2(size), 0 if disabled
+  private BSTNode<Artwork> sentinel; // pseudo-root reused by the rebalancing, null until the first
+  private final YearHistogram yearHistogram = new YearHistogram(); // counts and values per year
+  private double compactionRatio; // ratio of tombstones which triggers a compaction, 0 if eager
+
+  /**
+   * Creates a new empty ArtMuseum implemented as a plain binary search tree
+   */
+  public ArtMuseum() {
+    this(false);
+  }
+
+  /**
+   * Creates a new empty ArtMuseum. A self-adjusting museum is implemented as a splay tree: every
+   * lookup, add, and buy moves the accessed artwork to the root, so that frequently accessed
+   * artworks are found within a few hops. All operations run in amortized O(log n) time.
+   *
+   * @param selfAdjusting true to create a self-adjusting (splay) museum, false for a plain BST
+   */
+  public ArtMuseum(boolean selfAdjusting) {
+    this.selfAdjusting = selfAdjusting;
+  }
+
+  /**
+   * Creates a new plain ArtMuseum holding a list of artworks sorted in strictly increasing order
+   * with respect to Artwork.compareTo(). The tree is built in one bulk step in O(n) time, with the
+   * middle artwork of every sub-list at the root of its subtree, so it is balanced.
+   *
+   * @param sorted artworks sorted in strictly increasing order, with no matching artworks
+   * @return a new museum holding the artworks of sorted
+   * @throws NullPointerException     if sorted or any of its artworks is null
+   * @throws IllegalArgumentException if sorted is not in strictly increasing order
+   */
+  public static ArtMuseum fromSortedArtworks(List<Artwork> sorted) {
+    for (int i = 1; i < sorted.size(); i++) {
+      if (sorted.get(i - 1).compareTo(sorted.get(i)) >= 0)
+        throw new IllegalArgumentException("Artworks are not sorted in strictly increasing order");
+    }
+    ArtMuseum museum = new ArtMuseum();
+    museum.root = buildBalancedHelper(sorted, 0, sorted.size());
+    museum.size = sorted.size();
+    if (!sorted.isEmpty()) {
+      museum.oldestArtwork = sorted.get(0);
+      museum.bestArtwork = sorted.get(sorted.size() - 1);
+    }
+    for (Artwork artwork : sorted)
+      museum.yearHistogram.add(artwork);
+    return museum;
+  }
+
+  /**
+   * Recursive helper method which builds a balanced BST holding a range of a sorted list of
+   * artworks. The middle artwork of the range is the root, and both halves are built recursively.
+   *
+   * @param sorted artworks sorted in strictly increasing order
+   * @param from   first index of the range, inclusive
+   * @param to     last index of the range, exclusive
+   * @return the root of the balanced BST, null if the range is empty
+   */
+  protected static BSTNode<Artwork> buildBalancedHelper(List<Artwork> sorted, int from, int to) {
+    if (from >= to)
+      return null;
+    int middle = (from + to) >>> 1;
+    BSTNode<Artwork> left = buildBalancedHelper(sorted, from, middle);
+    BSTNode<Artwork> right = buildBalancedHelper(sorted, middle + 1, to);
+    return new ArtworkNode(sorted.get(middle), left, right);
+  }
+
+  /**
+   * Merges the artworks of another museum into this museum. Both in-order sequences are merged
+   * and the tree of this museum is rebuilt balanced from the result, in O(m + n) time. Artworks of
+   * other matching an artwork of this museum are not added. The other museum is left unchanged.
+   *
+   * @param other museum whose artworks are added to this museum
+   * @return the number of artworks which were added to this museum
+   * @throws NullPointerException if other is null
+   */
+  public int merge(ArtMuseum other) {
+    if (other == null)
+      throw new NullPointerException("other is null");
+    if (other == this || other.isEmpty())
+      return 0;
+    ArrayList<Artwork> merged = new ArrayList<Artwork>(size + other.size());
+    ArrayList<Artwork> added = new ArrayList<Artwork>();
+    Iterator<Artwork> mine = iterator();
+    Iterator<Artwork> theirs = other.iterator();
+    Artwork nextMine = mine.hasNext() ? mine.next() : null;
+    Artwork nextTheirs = theirs.hasNext() ? theirs.next() : null;
+    while (nextMine != null || nextTheirs != null) {
+      int comparison = nextMine == null ? 1
+        : nextTheirs == null ? -1 : nextMine.compareTo(nextTheirs);
+      if (comparison <= 0) {
+        merged.add(nextMine);
+        nextMine = mine.hasNext() ? mine.next() : null;
+        if (comparison == 0)
+          nextTheirs = theirs.hasNext() ? theirs.next() : null;
+      } else {
+        merged.add(nextTheirs);
+        added.add(nextTheirs);
+        nextTheirs = theirs.hasNext() ? theirs.next() : null;
+      }
+    }
+    root = buildBalancedHelper(merged, 0, merged.size());
+    for (Artwork artwork : added)
+      artworkAdded(artwork);
+    return added.size();
+  }
+
+  /**
+   * Splits the artworks of this museum by year of creation into two new plain museums, in O(n)
+   * time: one traversal in order and two bulk builds. This museum is left unchanged.
+   *
+   * @param year first year of the second museum
+   * @return an array of two museums, the first one holding the artworks created before year and
+   *         the second one holding the artworks created in or after year
+   */
+  public ArtMuseum[] splitAtYear(int year) {
+    ArrayList<Artwork> before = new ArrayList<Artwork>();
+    ArrayList<Artwork> after = new ArrayList<Artwork>();
+    for (Artwork artwork : this) {
+      if (artwork.getYear() < year)
+        before.add(artwork);
+      else
+        after.add(artwork);
+    }
+    return new ArtMuseum[] {fromSortedArtworks(before), fromSortedArtworks(after)};
+  }
+
+  /**
+   * Checks whether this museum moves accessed artworks to the root of its tree
+   *
+   * @return true if this museum is self-adjusting, false otherwise
+   */
+  public boolean isSelfAdjusting() {
+    return selfAdjusting;
+  }
 
   /**
    * Checks whether this binary search tree (BST) is empty
@@ -16,7 +174,7 @@ public class ArtMuseum {
    * @return true if this ArtworkGallery is empty, false otherwise
    */
   public boolean isEmpty() {
-    return root == null;
+    return size == 0;
   }
 
   /**
@@ -32,6 +190,9 @@ public class ArtMuseum {
    * Checks whether this ArtworkGallery contains a Artwork given its name, year, and cost.
    *  The base case is the tree is empty; if the tree is not empty, we create a new artwork with
    *  the provided name and year and default cost and use it in the recursive helper method.
+   *  In a self-adjusting museum, the last artwork accessed by the search is splayed to the root.
+   *  If the bloom filter of this museum is enabled, it answers definite misses without searching
+   *  the tree.
    *
    * @param name name of the Artwork to search
    * @param year year of creation of the Artwork to search
@@ -42,6 +203,15 @@ public class ArtMuseum {
     //create a new artwork with the provided name and year and default cost and use it in the
     // search operation
     Artwork newArt = new Artwork(name, year, cost);
+    // a definite miss of the bloom filter does not need to search the tree
+    if (bloomFilter != null && !bloomFilter.mightContain(newArt))
+      return false;
+    if (selfAdjusting) {
+      if (root == null)
+        return false;
+      root = splayHelper(newArt, root);
+      return root.getData().compareTo(newArt) == 0;
+    }
     return lookupHelper(newArt, root);
   }
 
@@ -59,7 +229,7 @@ public class ArtMuseum {
       return false;
       //If they match, return true
     } else if (current.getData().compareTo(target)==0) {
-      return true;
+      return !ArtworkNode.isSold(current);
       //if the target is smaller, we recurse to the left
     } else if (current.getData().compareTo(target) > 0) {
       return lookupHelper(target, current.getLeft());
@@ -82,23 +252,206 @@ public class ArtMuseum {
     if (newArtwork == null)
       throw new NullPointerException("newArtwork is null");
      else if (root == null) {
-      root = new BSTNode<Artwork>(newArtwork);
-      size++;
+      root = new ArtworkNode(newArtwork);
+      artworkAdded(newArtwork);
       return true;
     }
-    if (addArtworkHelper(newArtwork, root)) {
-      size++;
+    if (selfAdjusting ? addSplayHelper(newArtwork) : addArtworkHelper(newArtwork, root)) {
+      artworkAdded(newArtwork);
+      // the new leaf is the deepest node of its path, so its depth tells whether height degraded
+      if (autoRebalanceFactor > 0 && !selfAdjusting) {
+        int depth = depthHelper(newArtwork, root);
+        if (depth > autoRebalanceFactor * log2(size + 1)) {
+          rebalanceScapegoat(newArtwork, depth);
+          // a scapegoat only shortens its own subtree, which may not be enough near the bound
+          if (depthHelper(newArtwork, root) > autoRebalanceFactor * log2(size + 1))
+            rebalance();
+        }
+      }
       return true;
     }
     return false;
   }
 
+  /**
+   * Updates the size and the bookkeeping of this museum after an artwork was added to its tree
+   *
+   * @param artwork the artwork which was added
+   */
+  private void artworkAdded(Artwork artwork) {
+    size++;
+    // keep the extremes up to date so that they can be read in constant time
+    if (bestArtwork == null || artwork.compareTo(bestArtwork) > 0)
+      bestArtwork = artwork;
+    if (oldestArtwork == null || artwork.compareTo(oldestArtwork) < 0)
+      oldestArtwork = artwork;
+    yearHistogram.add(artwork);
+    if (bloomFilter != null) {
+      bloomFilter.add(artwork);
+      if (bloomFilter.getInsertions() > bloomFilter.getCapacity())
+        rebuildBloomFilter();
+    }
+    publish(CatalogEvent.Type.ADD, artwork);
+  }
+
+  /**
+   * Updates the size and the bookkeeping of this museum after an artwork was removed from its tree
+   *
+   * @param artwork the artwork which was removed
+   */
+  private void artworkRemoved(Artwork artwork) {
+    size--;
+    // repair the tracked extremes only when one of them was removed
+    if (artwork.compareTo(bestArtwork) == 0)
+      bestArtwork = maxHelper(root);
+    if (artwork.compareTo(oldestArtwork) == 0)
+      oldestArtwork = minHelper(root);
+    yearHistogram.remove(artwork);
+    if (bloomFilter != null) {
+      // the removed artwork is still set in the bloom filter, which can only be fixed by a rebuild
+      bloomStaleCount++;
+      if (bloomStaleCount > bloomRebuildRatio * (size + 1))
+        rebuildBloomFilter();
+    }
+    publish(CatalogEvent.Type.BUY, artwork);
+  }
+
+  /**
+   * Subscribes a listener to the changes of this museum. Every artwork added to or bought from
+   * this museum from now on is published as a CatalogEvent with the next sequence number. Events
+   * are delivered to the listener in batches of batchSize events, on the thread changing this
+   * museum, or earlier when the subscription or this museum is flushed. A listener throwing a
+   * RuntimeException only cancels its own subscription: the change of this museum and the
+   * deliveries to the other subscriptions go on.
+   *
+   * @param listener  receiver of the batches of events
+   * @param batchSize number of events delivered at once, 1 to deliver every event immediately
+   * @return the new subscription, which can be flushed or cancelled
+   * @throws NullPointerException     if listener is null
+   * @throws IllegalArgumentException if batchSize is not positive
+   */
+  public CatalogSubscription subscribe(CatalogListener listener, int batchSize) {
+    CatalogSubscription subscription = new CatalogSubscription(listener, batchSize);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Cancels a subscription to the changes of this museum, dropping its pending events
+   *
+   * @param subscription subscription to cancel
+   */
+  public void unsubscribe(CatalogSubscription subscription) {
+    subscription.cancel();
+    subscriptions.remove(subscription);
+  }
+
+  /**
+   * Delivers the pending events of all the subscriptions to the changes of this museum
+   */
+  public void flushEvents() {
+    for (CatalogSubscription subscription : subscriptions)
+      subscription.flush();
+  }
+
+  /**
+   * Gets the sequence number of the last change of this museum
+   *
+   * @return the sequence number of the last catalog event, 0 if this museum was never changed
+   */
+  public long getLastSequence() {
+    return lastSequence;
+  }
+
+  /**
+   * Publishes a change of this museum to its subscriptions. Cancelled subscriptions are dropped.
+   * The subscriptions catch the exceptions of their listeners, so the change always completes.
+   *
+   * @param type    kind of change
+   * @param artwork artwork which was added or bought
+   */
+  private void publish(CatalogEvent.Type type, Artwork artwork) {
+    lastSequence++;
+    if (subscriptions.isEmpty())
+      return;
+    subscriptions.removeIf(CatalogSubscription::isCancelled);
+    CatalogEvent event = new CatalogEvent(lastSequence, type, artwork);
+    for (CatalogSubscription subscription : subscriptions)
+      subscription.publish(event);
+  }
+
+  /**
+   * Enables a bloom filter in front of this museum, so that lookups and purchases of artworks
+   * which are not stored in this museum return without searching the tree. Bought artworks stay
+   * set in the filter, so the filter is rebuilt from the tree once the number of artworks bought
+   * since the last build exceeds rebuildRatio times the size of this museum. It is also rebuilt
+   * when more artworks were added than it was sized for.
+   *
+   * @param falsePositiveRate target rate of lookups of missing artworks which still search the tree
+   * @param rebuildRatio      ratio of bought artworks to the size of this museum which triggers a
+   *                          rebuild of the filter
+   * @throws IllegalArgumentException if falsePositiveRate is not strictly between 0 and 1 or if
+   *                                  rebuildRatio is not positive
+   */
+  public void enableBloomFilter(double falsePositiveRate, double rebuildRatio) {
+    if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0))
+      throw new IllegalArgumentException("Invalid false positive rate. It must be in (0, 1)");
+    if (!(rebuildRatio > 0.0))
+      throw new IllegalArgumentException("Invalid rebuild ratio. It must be positive");
+    bloomFalsePositiveRate = falsePositiveRate;
+    bloomRebuildRatio = rebuildRatio;
+    rebuildBloomFilter();
+  }
+
+  /**
+   * Disables the bloom filter of this museum, if any
+   */
+  public void disableBloomFilter() {
+    bloomFilter = null;
+  }
+
+  /**
+   * Checks whether the bloom filter of this museum is enabled
+   *
+   * @return true if this museum has a bloom filter, false otherwise
+   */
+  public boolean isBloomFilterEnabled() {
+    return bloomFilter != null;
+  }
+
+  /**
+   * Builds a new bloom filter holding all the artworks of this museum. The filter is sized for
+   * twice the current size so that it can absorb further additions before the next rebuild.
+   */
+  private void rebuildBloomFilter() {
+    bloomFilter = new ArtworkBloomFilter(Math.max(2 * size, 1024), bloomFalsePositiveRate);
+    bloomFilterHelper(bloomFilter, root);
+    bloomStaleCount = 0;
+  }
+
+  /**
+   * Recursive helper method which adds all the artworks of the subtree rooted at current to a
+   * bloom filter
+   *
+   * @param filter  bloom filter to fill
+   * @param current "root" of the subtree to add
+   */
+  protected static void bloomFilterHelper(ArtworkBloomFilter filter, BSTNode<Artwork> current) {
+    if (current == null)
+      return;
+    if (!ArtworkNode.isSold(current))
+      filter.add(current.getData());
+    bloomFilterHelper(filter, current.getLeft());
+    bloomFilterHelper(filter, current.getRight());
+  }
+
   /**
    * Recursive helper method to add a new Artwork to an ArtworkGallery rooted at current.
    *  Based on compareTo() result, if the art work is same as current one, we should not add it;
    *  otherwise, if the target is greater than the current node, we recurse to right, if the target
    *  is smaller than the current node, we recurse to left. In each case we have to decide if the
-   *  node is a leaf, which is the base case.
+   *  node is a leaf, which is the base case. The subtree aggregates of current are updated once
+   *  the newArtwork was added below it. A tombstone matching newArtwork is revived in place.
    *
    * @param current The "root" of the subtree we are inserting new Artwork into.
    * @param newArtwork The Artwork to be added to a BST rooted at current.
@@ -108,48 +461,125 @@ public class ArtMuseum {
   protected static boolean addArtworkHelper(Artwork newArtwork, BSTNode<Artwork> current) {
     // if the art work is same as current one, we should not add it;
     if (current.getData().compareTo(newArtwork)==0) {
-      return false;
+      if (!ArtworkNode.isSold(current))
+        return false;
+      ((ArtworkNode) current).setSold(false);
+      ArtworkNode.update(current);
+      return true;
     }
-    BSTNode<Artwork> node = new BSTNode<>(newArtwork);
+    boolean added;
     //if the target is greater than the current node
     if (newArtwork.compareTo(current.getData()) > 0) {
       //if current node does not have right child, set this node as right child
       if (current.getRight() == null) {
-        current.setRight(node);
-        return true;
+        current.setRight(new ArtworkNode(newArtwork));
+        added = true;
        //if current node has a right child, we recurse to right
       } else
-        return addArtworkHelper(newArtwork, current.getRight());
+        added = addArtworkHelper(newArtwork, current.getRight());
     } else{
       //if the target is less than the current node
       if (current.getLeft() == null) {
-        current.setLeft(node);
-        return true;
+        current.setLeft(new ArtworkNode(newArtwork));
+        added = true;
       } else
-        return addArtworkHelper(newArtwork, current.getLeft());
+        added = addArtworkHelper(newArtwork, current.getLeft());
+    }
+    if (added)
+      ArtworkNode.update(current);
+    return added;
+  }
+
+  /**
+   * Adds a new Artwork to a self-adjusting museum. The tree is splayed around newArtwork first; if
+   * there is no match, newArtwork becomes the new root and the old root is split between its
+   * subtrees.
+   *
+   * @param newArtwork The Artwork to be added to this non-empty self-adjusting museum
+   * @return true if the newArtwork was successfully added, false if a match with newArtwork is
+   *         already present in this museum
+   */
+  private boolean addSplayHelper(Artwork newArtwork) {
+    root = splayHelper(newArtwork, root);
+    int comparison = newArtwork.compareTo(root.getData());
+    if (comparison == 0)
+      return false;
+    BSTNode<Artwork> node;
+    if (comparison < 0) {
+      node = new ArtworkNode(newArtwork, root.getLeft(), root);
+      root.setLeft(null);
+    } else {
+      node = new ArtworkNode(newArtwork, root, root.getRight());
+      root.setRight(null);
     }
+    ArtworkNode.update(root);
+    ArtworkNode.update(node);
+    root = node;
+    return true;
   }
 
   /**
    * Gets the recent best Artwork in this BST (meaning the largest artwork in this gallery), the
-   * largest artwork should be the rightest work. The largest node is the rightest node in BST.
-   * We are going to consider three cases: tree is empty; only one node;more than one node
+   * largest artwork should be the rightest work. The largest artwork is tracked while adding and
+   * buying artworks, so this method runs in constant time.
    *
    * @return the best (largest) Artwork (the most recent, highest cost artwork) in this
    *         ArtworkGallery, and null if this tree is empty.
    */
   public Artwork getBestArtwork() {
-    if (isEmpty())
-      return null;
-    else if (root.getLeft() == null && root.getRight() == null)
-      return this.root.getData();
-    else{
-    BSTNode<Artwork> work = root;
-    while (work.getRight()!=null) {
-        work = work.getRight();
-      }
-    return work.getData();
+    return bestArtwork;
+  }
+
+  /**
+   * Gets the oldest Artwork in this BST (meaning the smallest artwork in this gallery), which is
+   * the leftest work. The smallest artwork is tracked while adding and buying artworks, so this
+   * method runs in constant time.
+   *
+   * @return the oldest (smallest) Artwork (the oldest, lowest cost artwork) in this
+   *         ArtworkGallery, and null if this tree is empty.
+   */
+  public Artwork getOldestArtwork() {
+    return oldestArtwork;
+  }
+
+  /**
+   * Helper method which walks down the right spine of the subtree rooted at current to find its
+   * largest artwork. Right subtrees holding only tombstones are skipped, and so is a tombstone at
+   * the end of the spine, in which case the walk goes on in its left subtree.
+   *
+   * @param current "root" of the subtree
+   * @return the largest artwork in the subtree rooted at current, or null if it holds none
+   */
+  protected static Artwork maxHelper(BSTNode<Artwork> current) {
+    while (current != null) {
+      if (ArtworkNode.countOf(current.getRight()) > 0)
+        current = current.getRight();
+      else if (!ArtworkNode.isSold(current))
+        return current.getData();
+      else
+        current = current.getLeft();
     }
+    return null;
+  }
+
+  /**
+   * Helper method which walks down the left spine of the subtree rooted at current to find its
+   * smallest artwork. Left subtrees holding only tombstones are skipped, and so is a tombstone at
+   * the end of the spine, in which case the walk goes on in its right subtree.
+   *
+   * @param current "root" of the subtree
+   * @return the smallest artwork in the subtree rooted at current, or null if it holds none
+   */
+  protected static Artwork minHelper(BSTNode<Artwork> current) {
+    while (current != null) {
+      if (ArtworkNode.countOf(current.getLeft()) > 0)
+        current = current.getLeft();
+      else if (!ArtworkNode.isSold(current))
+        return current.getData();
+      else
+        current = current.getRight();
+    }
+    return null;
   }
 
   /**
@@ -185,11 +615,48 @@ public class ArtMuseum {
       return output;
     }
     output += toStringHelper(current.getLeft());
-    output += current.getData().toString() +"\n";
+    if (!ArtworkNode.isSold(current))
+      output += current.getData().toString() +"\n";
     output += toStringHelper(current.getRight());
     return output;
   }
 
+  /**
+   * Returns an iterator over the artworks of this museum in increasing order with respect to the
+   * result of Artwork.compareTo() method (year, cost, name). The iterator keeps only the path to
+   * the next artwork, so it uses O(h) memory. This museum must not be modified, nor looked up if
+   * it is self-adjusting, while the iterator is in use.
+   *
+   * @return an in-order iterator over the artworks of this museum
+   */
+  @Override
+  public Iterator<Artwork> iterator() {
+    return new InOrderIterator(root);
+  }
+
+  /**
+   * Gets a page of the catalog: the artworks following a cursor in increasing order with respect
+   * to the result of Artwork.compareTo() method. The position just after the cursor is found by
+   * one descent from the root, so a page costs O(h + limit) time wherever it is in the catalog.
+   * The cursor does not need to be stored in this museum, so pages can be resumed after the
+   * cursor was bought.
+   *
+   * @param after artwork after which the page starts, or null to start at the beginning
+   * @param limit maximum number of artworks of the page
+   * @return the page, holding up to limit artworks, with the cursor of the next page
+   * @throws IllegalArgumentException if limit is not positive
+   */
+  public ArtworkPage page(Artwork after, int limit) {
+    if (limit <= 0)
+      throw new IllegalArgumentException("Invalid page limit. It must be positive");
+    InOrderIterator iterator = new InOrderIterator(root, after);
+    ArrayList<Artwork> artworks = new ArrayList<Artwork>(Math.min(limit, size));
+    while (artworks.size() < limit && iterator.hasNext())
+      artworks.add(iterator.next());
+    Artwork nextCursor = iterator.hasNext() ? artworks.get(artworks.size() - 1) : null;
+    return new ArtworkPage(artworks, nextCursor);
+  }
+
   /**
    * Computes and returns the height of this BST, counting the number of NODES from root to the
    * deepest leaf.If the tree is empty, node is 0, height is 0. If there is one node, height is 1.
@@ -197,7 +664,7 @@ public class ArtMuseum {
    * @return the height of this Binary Search Tree
    */
   public int height() {
-      if (this.isEmpty())
+      if (root == null)
         return 0;
       else if (root.getRight() == null && root.getLeft() == null)
         return 1;
@@ -228,6 +695,559 @@ public class ArtMuseum {
   }
 
 
+  /**
+   * Gets the histogram of the artworks of this museum per year of creation, which is kept up to
+   * date as artworks are added and bought. It answers per-year counts and values in O(1) time and
+   * ranges of years in O(log Y) time, whatever the shape of the tree.
+   *
+   * @return the year histogram of this museum
+   */
+  public YearHistogram getYearHistogram() {
+    return yearHistogram;
+  }
+
+  /**
+   * Counts the artworks created between two years, both inclusive. This method uses the subtree
+   * aggregates and runs in O(h) time, which is O(log n) when the tree is balanced.
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the number of artworks whose year is within [fromYear, toYear], 0 if fromYear is
+   *         greater than toYear
+   */
+  public int count(int fromYear, int toYear) {
+    return (int) rangeAggregateHelper(fromYear, toYear, root, true);
+  }
+
+  /**
+   * Computes the total value of the artworks created between two years, both inclusive. This
+   * method uses the subtree aggregates and runs in O(h) time, which is O(log n) when the tree is
+   * balanced.
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the total cost of the artworks whose year is within [fromYear, toYear], 0.0 if fromYear
+   *         is greater than toYear
+   */
+  public double totalValue(int fromYear, int toYear) {
+    return rangeAggregateHelper(fromYear, toYear, root, false);
+  }
+
+  /**
+   * Helper method which aggregates the artworks whose year is within [fromYear, toYear] in the
+   * subtree rooted at current. We first go down to the highest node within the range, which splits
+   * the range. Then, we go down its left subtree along the lower bound, adding every node within
+   * the range together with its right subtree, and symmetrically down its right subtree along the
+   * upper bound.
+   *
+   * @param fromYear  first year of the range
+   * @param toYear    last year of the range
+   * @param current   "root" of the subtree to aggregate
+   * @param countOnly true to count the artworks, false to sum their costs
+   * @return the count or the total cost of the artworks within the range
+   */
+  protected static double rangeAggregateHelper(int fromYear, int toYear, BSTNode<Artwork> current,
+    boolean countOnly) {
+    // find the node splitting the range
+    while (current != null) {
+      if (current.getData().getYear() < fromYear)
+        current = current.getRight();
+      else if (current.getData().getYear() > toYear)
+        current = current.getLeft();
+      else
+        break;
+    }
+    if (current == null)
+      return 0.0;
+    double total = liveAggregate(current, countOnly);
+    // lower bound: every node within the range and its right subtree are counted
+    BSTNode<Artwork> node = current.getLeft();
+    while (node != null) {
+      if (node.getData().getYear() >= fromYear) {
+        total += liveAggregate(node, countOnly) + (countOnly ? ArtworkNode.countOf(node.getRight())
+          : ArtworkNode.totalCostOf(node.getRight()));
+        node = node.getLeft();
+      } else
+        node = node.getRight();
+    }
+    // upper bound: every node within the range and its left subtree are counted
+    node = current.getRight();
+    while (node != null) {
+      if (node.getData().getYear() <= toYear) {
+        total += liveAggregate(node, countOnly) + (countOnly ? ArtworkNode.countOf(node.getLeft())
+          : ArtworkNode.totalCostOf(node.getLeft()));
+        node = node.getRight();
+      } else
+        node = node.getLeft();
+    }
+    return total;
+  }
+
+  /**
+   * Helper method which aggregates the artwork of a single node, without its subtrees
+   *
+   * @param node      node to aggregate
+   * @param countOnly true to count the artwork, false to get its cost
+   * @return the count or the cost of the artwork of node, 0 if node is a tombstone
+   */
+  private static double liveAggregate(BSTNode<Artwork> node, boolean countOnly) {
+    if (ArtworkNode.isSold(node))
+      return 0.0;
+    return countOnly ? 1 : node.getData().getCost();
+  }
+
+  /**
+   * Enables the automatic rebalancing of this museum: whenever an added artwork lands deeper than
+   * factor * log2(size + 1) nodes, the height of the tree degraded past that bound. The lowest
+   * subtree on the path of the artwork which is too high for its own size is then rebalanced in
+   * place, like the scapegoat of a scapegoat tree, and the whole tree only if that is not enough.
+   * Rebalancing small subtrees keeps the cost of the adds O(log(size)) amortized, even for sorted
+   * adds. Factors close to 1 leave little room above the smallest possible height, so they
+   * rebalance much more often. Self-adjusting museums are never rebalanced automatically, since
+   * they adjust their shape to the accesses.
+   *
+   * The rebalancing runs within addArtwork(), not in the background: this museum is not
+   * thread-safe, so no other thread may restructure its tree. An add which triggers it is slower
+   * than the others, up to O(size) for the first add after enabling it on a degenerate tree.
+   *
+   * @param factor multiple of log2(size + 1) which the height may reach, greater than 1, or 0 to
+   *               disable the automatic rebalancing
+   * @throws IllegalArgumentException if factor is neither 0 nor greater than 1
+   */
+  public void setAutoRebalanceFactor(double factor) {
+    if (factor != 0 && !(factor > 1.0))
+      throw new IllegalArgumentException("Invalid rebalance factor. It must be 0 or more than 1");
+    autoRebalanceFactor = factor;
+  }
+
+  /**
+   * Rebalances the tree of this museum in place with the Day-Stout-Warren algorithm, in O(n) time
+   * and O(1) extra space. The tree is first turned into a vine (a sorted list linked through the
+   * right children) by right rotations, then the vine is folded into a complete tree by rounds of
+   * left rotations. Afterwards, the height of the tree is the smallest possible, that is
+   * ceil(log2(size + 1)). The rotations keep the subtree aggregates up to date.
+   */
+  public void rebalance() {
+    if (root != null)
+      root = rebalanceSubtree(root);
+  }
+
+  /**
+   * Rebalances a subtree of this museum in place with the Day-Stout-Warren algorithm. The artworks
+   * of the subtree do not change, so neither do the aggregates of its ancestors.
+   *
+   * @param current "root" of the subtree to rebalance, must not be null
+   * @return the new "root" of the rebalanced subtree, which the caller links in place of current
+   */
+  private BSTNode<Artwork> rebalanceSubtree(BSTNode<Artwork> current) {
+    // pseudo-root above the subtree, so that its root can be rotated like any other node
+    if (sentinel == null)
+      sentinel = new ArtworkNode(current.getData());
+    sentinel.setRight(current);
+    int nodes = treeToVineHelper(sentinel);
+    // the first round makes the bottom level of the complete tree, the next rounds halve the vine
+    int leaves = nodes + 1 - Integer.highestOneBit(nodes + 1);
+    compressHelper(sentinel, leaves);
+    for (int vine = nodes - leaves; vine > 1; vine /= 2)
+      compressHelper(sentinel, vine / 2);
+    BSTNode<Artwork> rebalanced = sentinel.getRight();
+    sentinel.setRight(null);
+    return rebalanced;
+  }
+
+  /**
+   * Rebalances the scapegoat of a new artwork which landed too deep, as in a scapegoat tree: the
+   * lowest node on its path whose subtree is too high for its own size, meaning that more than
+   * factor * log2(nodes) edges lead from that node down to the artwork. Such a node is also
+   * unbalanced by weight, so many adds are needed below it before it is rebalanced again. The path
+   * is descended again rather than recorded, so that this takes O(1) extra space.
+   *
+   * @param newArtwork artwork just added
+   * @param depth      number of nodes from the root to newArtwork
+   */
+  private void rebalanceScapegoat(Artwork newArtwork, int depth) {
+    BSTNode<Artwork> scapegoat = root;
+    BSTNode<Artwork> scapegoatParent = null; // null while the scapegoat is the root
+    BSTNode<Artwork> parent = null;
+    BSTNode<Artwork> current = root;
+    int comparison;
+    // the new artwork is a leaf, which can never be the scapegoat
+    for (int height = depth; (comparison = newArtwork.compareTo(current.getData())) != 0;
+      height--) {
+      // tombstones take room in the tree like the other nodes
+      int nodes = ArtworkNode.countOf(current) + ArtworkNode.soldCountOf(current);
+      if (height - 1 > autoRebalanceFactor * log2(nodes)) {
+        scapegoat = current;
+        scapegoatParent = parent;
+      }
+      parent = current;
+      current = comparison < 0 ? current.getLeft() : current.getRight();
+    }
+    BSTNode<Artwork> rebalanced = rebalanceSubtree(scapegoat);
+    if (scapegoatParent == null)
+      root = rebalanced;
+    else if (scapegoatParent.getLeft() == scapegoat)
+      scapegoatParent.setLeft(rebalanced);
+    else
+      scapegoatParent.setRight(rebalanced);
+  }
+
+  /**
+   * Helper method which turns the tree hanging right of pseudoRoot into a vine by rotating right
+   * every node which has a left child
+   *
+   * @param pseudoRoot node whose right child is the root of the tree
+   * @return the number of nodes of the vine
+   */
+  protected static int treeToVineHelper(BSTNode<Artwork> pseudoRoot) {
+    int nodes = 0;
+    BSTNode<Artwork> tail = pseudoRoot;
+    BSTNode<Artwork> rest = tail.getRight();
+    while (rest != null) {
+      if (rest.getLeft() == null) {
+        nodes++;
+        tail = rest;
+        rest = rest.getRight();
+      } else {
+        rest = rotateRight(rest);
+        tail.setRight(rest);
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Helper method which rotates left every other node of the vine hanging right of pseudoRoot,
+   * count times from the top
+   *
+   * @param pseudoRoot node whose right child is the top of the vine
+   * @param count      number of left rotations
+   */
+  protected static void compressHelper(BSTNode<Artwork> pseudoRoot, int count) {
+    BSTNode<Artwork> scanner = pseudoRoot;
+    for (int i = 0; i < count; i++) {
+      scanner.setRight(rotateLeft(scanner.getRight()));
+      scanner = scanner.getRight();
+    }
+  }
+
+  /**
+   * Helper method which computes the depth of the node matching target in the tree rooted at
+   * current, counting nodes as height() does
+   *
+   * @param target  artwork whose depth is computed
+   * @param current root of the tree
+   * @return the number of nodes from current to the match of target, or to the last node of the
+   *         search path if there is no match
+   */
+  protected static int depthHelper(Artwork target, BSTNode<Artwork> current) {
+    int depth = 0;
+    while (current != null) {
+      depth++;
+      int comparison = target.compareTo(current.getData());
+      if (comparison == 0)
+        break;
+      current = comparison < 0 ? current.getLeft() : current.getRight();
+    }
+    return depth;
+  }
+
+  /**
+   * Computes the base 2 logarithm of a positive number
+   *
+   * @param value positive number
+   * @return log2(value)
+   */
+  private static double log2(int value) {
+    return Math.log(value) / Math.log(2);
+  }
+
+  /**
+   * Gets the greatest artwork of this museum less than or equal to a given artwork, with respect
+   * to the result of Artwork.compareTo() method (year, cost, name)
+   *
+   * @param artwork artwork to compare to, which does not need to be stored in this museum
+   * @return the greatest artwork less than or equal to artwork, or null if there is none
+   * @throws NullPointerException if artwork is null
+   */
+  public Artwork floor(Artwork artwork) {
+    return belowHelper(artwork, root, true);
+  }
+
+  /**
+   * Gets the greatest artwork of this museum strictly less than a given artwork, with respect to
+   * the result of Artwork.compareTo() method (year, cost, name)
+   *
+   * @param artwork artwork to compare to, which does not need to be stored in this museum
+   * @return the greatest artwork strictly less than artwork, or null if there is none
+   * @throws NullPointerException if artwork is null
+   */
+  public Artwork lower(Artwork artwork) {
+    return belowHelper(artwork, root, false);
+  }
+
+  /**
+   * Gets the smallest artwork of this museum greater than or equal to a given artwork, with
+   * respect to the result of Artwork.compareTo() method (year, cost, name)
+   *
+   * @param artwork artwork to compare to, which does not need to be stored in this museum
+   * @return the smallest artwork greater than or equal to artwork, or null if there is none
+   * @throws NullPointerException if artwork is null
+   */
+  public Artwork ceiling(Artwork artwork) {
+    return aboveHelper(artwork, root, true);
+  }
+
+  /**
+   * Gets the smallest artwork of this museum strictly greater than a given artwork, with respect
+   * to the result of Artwork.compareTo() method (year, cost, name). For instance, this is the
+   * next artwork after a given one in the catalog.
+   *
+   * @param artwork artwork to compare to, which does not need to be stored in this museum
+   * @return the smallest artwork strictly greater than artwork, or null if there is none
+   * @throws NullPointerException if artwork is null
+   */
+  public Artwork higher(Artwork artwork) {
+    return aboveHelper(artwork, root, false);
+  }
+
+  /**
+   * Gets the best artwork created in a given year which costs at most a given budget, meaning the
+   * most expensive one, and the greatest name among those with the same cost. This method runs in
+   * O(h) time.
+   *
+   * @param year    creation year of the artwork
+   * @param maxCost the maximum cost of the artwork
+   * @return the best artwork of year whose cost is at most maxCost, or null if there is none
+   * @throws IllegalArgumentException if maxCost is NaN or infinite
+   */
+  public Artwork bestUnderBudget(int year, double maxCost) {
+    // NaN would compare greater than every cost along the path and return the most expensive one
+    if (!Double.isFinite(maxCost))
+      throw new IllegalArgumentException("Invalid maximum cost. It must be finite");
+    Artwork best = budgetHelper(year, maxCost, root);
+    return best != null && best.getYear() == year ? best : null;
+  }
+
+  /**
+   * Recursive helper method which finds the greatest artwork of the subtree rooted at current
+   * created before year, or in year at a cost of at most maxCost. The search goes down a single
+   * path; it only backs up when the candidate reached is a tombstone, to the largest artwork left
+   * of it.
+   *
+   * @param year    creation year of the artwork
+   * @param maxCost the maximum cost of the artwork created in year
+   * @param current "root" of the subtree
+   * @return the greatest such artwork, or null if there is none
+   */
+  protected static Artwork budgetHelper(int year, double maxCost, BSTNode<Artwork> current) {
+    if (current == null)
+      return null;
+    Artwork artwork = current.getData();
+    if (artwork.getYear() > year || (artwork.getYear() == year && artwork.getCost() > maxCost))
+      return budgetHelper(year, maxCost, current.getLeft());
+    // a candidate, better ones can only be on the right
+    Artwork best = budgetHelper(year, maxCost, current.getRight());
+    if (best != null)
+      return best;
+    return ArtworkNode.isSold(current) ? maxHelper(current.getLeft()) : artwork;
+  }
+
+  /**
+   * Recursive helper method which finds the greatest artwork less than target (or equal to target
+   * if inclusive) in the subtree rooted at current. The search goes down a single path; it only
+   * backs up when the candidate reached is a tombstone, to the largest artwork left of it.
+   *
+   * @param target    artwork to compare to
+   * @param current   "root" of the subtree
+   * @param inclusive true to accept an artwork matching target
+   * @return the greatest such artwork, or null if there is none
+   */
+  protected static Artwork belowHelper(Artwork target, BSTNode<Artwork> current,
+    boolean inclusive) {
+    if (target == null)
+      throw new NullPointerException("artwork is null");
+    if (current == null)
+      return null;
+    int comparison = current.getData().compareTo(target);
+    if (comparison > 0 || (comparison == 0 && !inclusive))
+      return belowHelper(target, current.getLeft(), inclusive);
+    if (comparison < 0) {
+      // a candidate, greater ones can only be on the right
+      Artwork result = belowHelper(target, current.getRight(), inclusive);
+      if (result != null)
+        return result;
+    }
+    return ArtworkNode.isSold(current) ? maxHelper(current.getLeft()) : current.getData();
+  }
+
+  /**
+   * Recursive helper method which finds the smallest artwork greater than target (or equal to
+   * target if inclusive) in the subtree rooted at current. The search goes down a single path; it
+   * only backs up when the candidate reached is a tombstone, to the smallest artwork right of it.
+   *
+   * @param target    artwork to compare to
+   * @param current   "root" of the subtree
+   * @param inclusive true to accept an artwork matching target
+   * @return the smallest such artwork, or null if there is none
+   */
+  protected static Artwork aboveHelper(Artwork target, BSTNode<Artwork> current,
+    boolean inclusive) {
+    if (target == null)
+      throw new NullPointerException("artwork is null");
+    if (current == null)
+      return null;
+    int comparison = current.getData().compareTo(target);
+    if (comparison < 0 || (comparison == 0 && !inclusive))
+      return aboveHelper(target, current.getRight(), inclusive);
+    if (comparison > 0) {
+      // a candidate, smaller ones can only be on the left
+      Artwork result = aboveHelper(target, current.getLeft(), inclusive);
+      if (result != null)
+        return result;
+    }
+    return ArtworkNode.isSold(current) ? minHelper(current.getRight()) : current.getData();
+  }
+
+  /**
+   * Runs a compound query over this museum. The planner of explain() chooses the access path, then
+   * every artwork read by that path is filtered by all the predicates of the query.
+   *
+   * @param query query to run
+   * @return the matching artworks in increasing order, with the plan which was used
+   * @throws NullPointerException if query is null
+   */
+  public QueryResult query(ArtworkQuery query) {
+    QueryPlan plan = explain(query);
+    ArrayList<Artwork> artworks;
+    switch (plan.getAccessPath()) {
+      case YEAR_RANGE_SCAN:
+        artworks = new ArrayList<Artwork>((int) Math.min(plan.getEstimatedRows(), size));
+        yearRangeScanHelper(query, root, artworks);
+        break;
+      case PARALLEL_FULL_SCAN:
+        artworks = ForkJoinPool.commonPool().invoke(new ParallelScanTask(query, root));
+        break;
+      default:
+        artworks = new ArrayList<Artwork>();
+        fullScanHelper(query, root, artworks);
+    }
+    return new QueryResult(artworks, plan);
+  }
+
+  /**
+   * Chooses how to run a compound query, without running it. The candidate access paths are
+   * estimated in node visits on the calling thread:
+   * - a scan of the year range of the tree, whose number of rows is known exactly from the year
+   *   histogram, costs log2(size) to reach the range plus one visit per row;
+   * - a full scan costs one visit per artwork;
+   * - a parallel full scan splits the visits across the threads of the common fork-join pool, but
+   *   pays a fixed startup cost.
+   * This museum has no index on cost or name, so those predicates are always filtered while
+   * scanning. The cheapest access path is chosen.
+   *
+   * @param query query to plan
+   * @return the plan of the query
+   * @throws NullPointerException if query is null
+   */
+  public QueryPlan explain(ArtworkQuery query) {
+    if (query == null)
+      throw new NullPointerException("query is null");
+    QueryPlan best = new QueryPlan(QueryPlan.AccessPath.FULL_SCAN, size, size);
+    if (query.hasYearRange()) {
+      int rows = yearHistogram.count(query.getFromYear(), query.getToYear());
+      double cost = log2(size + 1) + rows;
+      if (cost < best.getEstimatedCost())
+        best = new QueryPlan(QueryPlan.AccessPath.YEAR_RANGE_SCAN, rows, cost);
+    }
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    if (parallelism > 1) {
+      double cost = (double) size / parallelism + PARALLEL_SCAN_STARTUP_COST;
+      if (cost < best.getEstimatedCost())
+        best = new QueryPlan(QueryPlan.AccessPath.PARALLEL_FULL_SCAN, size, cost);
+    }
+    return best;
+  }
+
+  /**
+   * Recursive helper method which adds the artworks matching a query in the subtree rooted at
+   * current to a list in increasing order, visiting only the subtrees which overlap the year range
+   * of the query
+   *
+   * @param query   query to match
+   * @param current "root" of the subtree to scan
+   * @param result  list to add the matching artworks to
+   */
+  protected static void yearRangeScanHelper(ArtworkQuery query, BSTNode<Artwork> current,
+    ArrayList<Artwork> result) {
+    if (current == null)
+      return;
+    int year = current.getData().getYear();
+    if (year >= query.getFromYear())
+      yearRangeScanHelper(query, current.getLeft(), result);
+    if (!ArtworkNode.isSold(current) && query.matches(current.getData()))
+      result.add(current.getData());
+    if (year <= query.getToYear())
+      yearRangeScanHelper(query, current.getRight(), result);
+  }
+
+  /**
+   * Recursive helper method which adds the artworks matching a query in the subtree rooted at
+   * current to a list in increasing order
+   *
+   * @param query   query to match
+   * @param current "root" of the subtree to scan
+   * @param result  list to add the matching artworks to
+   */
+  protected static void fullScanHelper(ArtworkQuery query, BSTNode<Artwork> current,
+    ArrayList<Artwork> result) {
+    if (current == null)
+      return;
+    fullScanHelper(query, current.getLeft(), result);
+    if (!ArtworkNode.isSold(current) && query.matches(current.getData()))
+      result.add(current.getData());
+    fullScanHelper(query, current.getRight(), result);
+  }
+
+  /**
+   * Fork-join task scanning a subtree for the artworks matching a query. Subtrees larger than
+   * PARALLEL_SCAN_GRAIN are split into their left and right subtrees, which are scanned in
+   * parallel and concatenated in order.
+   */
+  private static class ParallelScanTask extends RecursiveTask<ArrayList<Artwork>> {
+    private static final long serialVersionUID = 1L;
+
+    private final ArtworkQuery query; // query to match
+    private final BSTNode<Artwork> current; // "root" of the subtree to scan
+
+    /**
+     * Creates a task scanning a subtree
+     *
+     * @param query   query to match
+     * @param current "root" of the subtree to scan
+     */
+    private ParallelScanTask(ArtworkQuery query, BSTNode<Artwork> current) {
+      this.query = query;
+      this.current = current;
+    }
+
+    @Override
+    protected ArrayList<Artwork> compute() {
+      if (ArtworkNode.countOf(current) <= PARALLEL_SCAN_GRAIN) {
+        ArrayList<Artwork> result = new ArrayList<Artwork>();
+        fullScanHelper(query, current, result);
+        return result;
+      }
+      ParallelScanTask right = new ParallelScanTask(query, current.getRight());
+      right.fork();
+      ArrayList<Artwork> result = new ParallelScanTask(query, current.getLeft()).compute();
+      if (!ArtworkNode.isSold(current) && query.matches(current.getData()))
+        result.add(current.getData());
+      result.addAll(right.join());
+      return result;
+    }
+  }
+
   /**
    * Search for all artwork objects created on a given year and have a maximum cost value.Base case
    * is the tree is empty, for recursive step, we use lookuphelper method to recurse.
@@ -263,7 +1283,8 @@ public class ArtMuseum {
     ArrayList<Artwork> artWorkList = new ArrayList<Artwork>();
     if (current == null)
       return artWorkList;
-    if (current.getData().getYear() == year && current.getData().getCost() <= cost) {
+    if (current.getData().getYear() == year && current.getData().getCost() <= cost
+      && !ArtworkNode.isSold(current)) {
       artWorkList.add(current.getData());
     }
     artWorkList.addAll(lookupAllHelper(year, cost, current.getLeft()));
@@ -277,81 +1298,427 @@ public class ArtMuseum {
    *
    * @param name name of the artwork, artist
    * @param year creation year of artwork
+   * @param cost cost of the artwork
    * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
    *           with the buying criteria
    */
 
   public void buyArtwork(String name, int year, double cost) throws NoSuchElementException{
-    Artwork artwork = new Artwork(name, year, cost);
-    root = buyArtworkHelper(artwork, root);
-    size--;
+    purchaseArtwork(name, year, cost);
   }
 
   /**
-   * Recursive helper method to buy artwork given the name, year and cost. In terms of BST
-   * operation, this is equivalent to finding the specific node and deleting it from the tree.
+   * Buy an artwork with the specified name, year and cost, and return it. The node of the artwork
+   * is unlinked in a single descent: if it has two children, its successor node is unlinked from
+   * the right subtree on the way and takes its place, so no node is allocated. If purchases are
+   * lazy, the node is only marked sold instead, and the tree is compacted once the ratio of
+   * tombstones exceeds its threshold. If there is no match, this museum, including its size, is
+   * left unchanged.
    *
-   * @param current "root" of the subtree we are checking whether it contains a match to target.
-   * @param target  a reference to a Artwork we are searching to remove in the BST rooted at
-   *                current.
-   * @return the new "root" of the subtree we are checking after trying to remove target
+   * @param name name of the artwork, artist
+   * @param year creation year of artwork
+   * @param cost cost of the artwork
+   * @return the artwork which was removed from this museum
    * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
-   *           with the buying criteria in the BST rooted at current
+   *           with the buying criteria
    */
-  protected static BSTNode<Artwork> buyArtworkHelper(Artwork target, BSTNode<Artwork> current)
+  public Artwork purchaseArtwork(String name, int year, double cost)
     throws NoSuchElementException {
-    if (current == null) {
+    Artwork target = new Artwork(name, year, cost);
+    if (root == null || (bloomFilter != null && !bloomFilter.mightContain(target)))
       throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+    BSTNode<Artwork> removed;
+    if (selfAdjusting) {
+      removed = buySplayHelper(target);
+    } else if (compactionRatio > 0) {
+      removed = tombstoneHelper(target, root);
+    } else {
+      int comparison = target.compareTo(root.getData());
+      if (comparison == 0) {
+        removed = root;
+        root = spliceOutHelper(root);
+      } else
+        removed = unlinkHelper(target, root, comparison);
     }
-    // Compare the target to the data at current and proceed accordingly
-    // Recurse on the left or right subtree with respect to the comparison result
-    if (target.compareTo(current.getData()) > 0) {
-      current.setRight(buyArtworkHelper(target, current.getRight()));
-    } else if (target.compareTo(current.getData()) < 0) {
-      current.setLeft(buyArtworkHelper(target, current.getLeft()));
+    artworkRemoved(removed.getData());
+    int tombstones = ArtworkNode.soldCountOf(root);
+    if (tombstones > 0 && tombstones > compactionRatio * (size + tombstones))
+      compact();
+    return removed.getData();
+  }
+
+  /**
+   * Recursive helper method which marks the node matching target in the subtree rooted at current
+   * as sold, without restructuring the tree. The subtree aggregates are updated while the
+   * recursion unwinds.
+   *
+   * @param target  a reference to a Artwork we are searching to buy in the BST rooted at current.
+   * @param current "root" of the subtree
+   * @return the node which was marked sold
+   * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
+   *           with the buying criteria in the BST rooted at current, or if it was already sold
+   */
+  protected static BSTNode<Artwork> tombstoneHelper(Artwork target, BSTNode<Artwork> current)
+    throws NoSuchElementException {
+    if (current == null)
+      throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+    int comparison = target.compareTo(current.getData());
+    BSTNode<Artwork> sold;
+    if (comparison == 0) {
+      if (ArtworkNode.isSold(current))
+        throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+      ((ArtworkNode) current).setSold(true);
+      sold = current;
+    } else
+      sold = tombstoneHelper(target, comparison < 0 ? current.getLeft() : current.getRight());
+    ArtworkNode.update(current);
+    return sold;
+  }
+
+  /**
+   * Makes the purchases of this museum lazy: buying an artwork only marks its node sold in one
+   * O(h) descent, without restructuring the tree, and the node is kept as a tombstone which
+   * lookups and traversals skip. Once tombstones make more than compactionRatio of the nodes of
+   * the tree, the tree is compacted. Re-adding a sold artwork revives its tombstone.
+   *
+   * @param compactionRatio ratio of tombstones to the nodes of the tree which triggers a
+   *                        compaction, strictly between 0 and 1
+   * @throws IllegalArgumentException if compactionRatio is not strictly between 0 and 1
+   * @throws IllegalStateException    if this museum is self-adjusting, since every access
+   *                                  restructures its tree anyway
+   */
+  public void enableLazyPurchases(double compactionRatio) {
+    if (selfAdjusting)
+      throw new IllegalStateException("A self-adjusting museum cannot defer its purchases");
+    if (!(compactionRatio > 0.0 && compactionRatio < 1.0))
+      throw new IllegalArgumentException("Invalid compaction ratio. It must be in (0, 1)");
+    this.compactionRatio = compactionRatio;
+  }
+
+  /**
+   * Makes the purchases of this museum unlink their node again, after compacting the tombstones
+   * left by lazy purchases
+   */
+  public void disableLazyPurchases() {
+    compact();
+    compactionRatio = 0;
+  }
+
+  /**
+   * Checks whether the purchases of this museum are lazy
+   *
+   * @return true if buying an artwork leaves a tombstone, false otherwise
+   */
+  public boolean isLazyPurchasesEnabled() {
+    return compactionRatio > 0;
+  }
+
+  /**
+   * Gets the number of nodes of the tree which were marked sold and not compacted yet
+   *
+   * @return the number of tombstones of this museum
+   */
+  public int getTombstoneCount() {
+    return ArtworkNode.soldCountOf(root);
+  }
+
+  /**
+   * Physically removes the tombstones of this museum. The artworks which were not sold are read in
+   * order and the tree is rebuilt balanced from them, in O(n) time. The contents of this museum do
+   * not change, so neither does its bookkeeping.
+   */
+  public void compact() {
+    if (ArtworkNode.soldCountOf(root) == 0)
+      return;
+    ArrayList<Artwork> live = new ArrayList<Artwork>(size);
+    for (Artwork artwork : this)
+      live.add(artwork);
+    root = buildBalancedHelper(live, 0, live.size());
+  }
+
+  /**
+   * Recursive helper method which unlinks the node matching target from the subtree rooted at
+   * current, where current does not match target. The subtree aggregates are updated while the
+   * recursion unwinds, so if there is no match the exception leaves the tree unchanged.
+   *
+   * @param target     a reference to a Artwork we are searching to remove in the BST rooted at
+   *                   current.
+   * @param current    "root" of the subtree, must not be null
+   * @param comparison the result of target.compareTo(current.getData()), which is not 0
+   * @return the node which was unlinked from the subtree rooted at current
+   * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
+   *           with the buying criteria in the BST rooted at current
+   */
+  protected static BSTNode<Artwork> unlinkHelper(Artwork target, BSTNode<Artwork> current,
+    int comparison) throws NoSuchElementException {
+    BSTNode<Artwork> child = comparison < 0 ? current.getLeft() : current.getRight();
+    if (child == null)
+      throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+    int childComparison = target.compareTo(child.getData());
+    BSTNode<Artwork> removed;
+    if (childComparison == 0) {
+      removed = child;
+      if (comparison < 0)
+        current.setLeft(spliceOutHelper(child));
+      else
+        current.setRight(spliceOutHelper(child));
+    } else
+      removed = unlinkHelper(target, child, childComparison);
+    ArtworkNode.update(current);
+    return removed;
+  }
+
+  /**
+   * Helper method which computes the subtree replacing a node removed from the tree. If the node
+   * has up to one child, this child replaces it. Otherwise, its successor node is unlinked from the
+   * right subtree and adopts both children of the removed node.
+   *
+   * @param node the node to remove, must not be null
+   * @return the new "root" of the subtree which was rooted at node
+   */
+  protected static BSTNode<Artwork> spliceOutHelper(BSTNode<Artwork> node) {
+    if (node.getLeft() == null)
+      return node.getRight();
+    if (node.getRight() == null)
+      return node.getLeft();
+    BSTNode<Artwork> successor;
+    if (node.getRight().getLeft() == null) {
+      // the right child is the successor, it keeps its own right subtree
+      successor = node.getRight();
     } else {
-      // current does not have children
-      if (current.getLeft() == null && current.getRight() == null) {
-        return null;
-      }
-      // current has two children
-      else if (current.getLeft() != null && current.getRight() != null) {
-        Artwork successor = getSuccessor(current);
-        // Replace current with a new BSTNode whose data field value is the successor of target in
-        // the
-        // tree, and having the same left and right children as current.
-        current = new BSTNode<Artwork>(successor, current.getLeft(), current.getRight());
-        // Then, remove the successor from the right subtree. The successor must have up to one
-        // child.
-        current.setRight(buyArtworkHelper(successor, current.getRight()));
-      } else if (current.getLeft() == null) {
-        current = current.getRight();
-      } else if (current.getRight() == null) {
-        current = current.getLeft();
-      }
+      successor = unlinkMinHelper(node.getRight());
+      successor.setRight(node.getRight());
+    }
+    successor.setLeft(node.getLeft());
+    ArtworkNode.update(successor);
+    return successor;
+  }
+
+  /**
+   * Recursive helper method which unlinks the node holding the smallest artwork of the subtree
+   * rooted at current, where current has a left child, and updates the aggregates along the way
+   *
+   * @param current "root" of the subtree, which has a left child
+   * @return the node which was unlinked, holding the smallest artwork of the subtree
+   */
+  protected static BSTNode<Artwork> unlinkMinHelper(BSTNode<Artwork> current) {
+    BSTNode<Artwork> left = current.getLeft();
+    BSTNode<Artwork> min;
+    if (left.getLeft() == null) {
+      min = left;
+      current.setLeft(left.getRight());
+    } else
+      min = unlinkMinHelper(left);
+    ArtworkNode.update(current);
+    return min;
+  }
+
+  /**
+   * Removes target from this self-adjusting museum. The tree is splayed around target so that the
+   * match becomes the root. Then its left subtree is splayed around target as well, which brings
+   * the largest artwork of the left subtree to its root with no right child, where the right
+   * subtree of the match is attached.
+   *
+   * @param target a reference to a Artwork we are searching to remove in this non-empty museum
+   * @return the node which was removed from this museum
+   * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
+   *           with the buying criteria in this museum
+   */
+  private BSTNode<Artwork> buySplayHelper(Artwork target) throws NoSuchElementException {
+    root = splayHelper(target, root);
+    if (root.getData().compareTo(target) != 0)
+      throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+    BSTNode<Artwork> removed = root;
+    if (root.getLeft() == null) {
+      root = root.getRight();
+    } else {
+      BSTNode<Artwork> newRoot = splayHelper(target, root.getLeft());
+      newRoot.setRight(root.getRight());
+      ArtworkNode.update(newRoot);
+      root = newRoot;
+    }
+    return removed;
+  }
+
+  /**
+   * Top-down splay of the non-empty tree rooted at current around target. The nodes on the search
+   * path are rotated and split into a left tree (artworks smaller than target) and a right tree
+   * (artworks greater than target), which are then reassembled below the last node reached. The
+   * loop is iterative so that deep trees do not overflow the call stack. While the search goes
+   * down, every node linked into the left (or right) tree temporarily keeps a reference to its
+   * parent in that tree in place of its right (or left) child, so that the links and the subtree
+   * aggregates are repaired from the bottom up when the trees are reassembled.
+   *
+   * @param target  the Artwork to splay around
+   * @param current root of the tree to splay, must not be null
+   * @return the new root of the tree, which is the match of target if there is any, or else the
+   *         last node accessed by the search for target
+   */
+  protected static BSTNode<Artwork> splayHelper(Artwork target, BSTNode<Artwork> current) {
+    BSTNode<Artwork> leftMax = null; // largest node of the left tree
+    BSTNode<Artwork> rightMin = null; // smallest node of the right tree
+    BSTNode<Artwork> next;
+    while (true) {
+      int comparison = target.compareTo(current.getData());
+      if (comparison < 0) {
+        if (current.getLeft() == null)
+          break;
+        if (target.compareTo(current.getLeft().getData()) < 0) {
+          // zig-zig
+          current = rotateRight(current);
+          if (current.getLeft() == null)
+            break;
+        }
+        // link current into the right tree
+        next = current.getLeft();
+        current.setLeft(rightMin);
+        rightMin = current;
+        current = next;
+      } else if (comparison > 0) {
+        if (current.getRight() == null)
+          break;
+        if (target.compareTo(current.getRight().getData()) > 0) {
+          // zag-zag
+          current = rotateLeft(current);
+          if (current.getRight() == null)
+            break;
+        }
+        // link current into the left tree
+        next = current.getRight();
+        current.setRight(leftMax);
+        leftMax = current;
+        current = next;
+      } else
+        break;
+    }
+    // reassemble the left and right trees below current, from the bottom up
+    BSTNode<Artwork> leftTree = current.getLeft();
+    while (leftMax != null) {
+      next = leftMax.getRight();
+      leftMax.setRight(leftTree);
+      ArtworkNode.update(leftMax);
+      leftTree = leftMax;
+      leftMax = next;
     }
-    // Make sure to return current at the end of the method.
+    BSTNode<Artwork> rightTree = current.getRight();
+    while (rightMin != null) {
+      next = rightMin.getLeft();
+      rightMin.setLeft(rightTree);
+      ArtworkNode.update(rightMin);
+      rightTree = rightMin;
+      rightMin = next;
+    }
+    current.setLeft(leftTree);
+    current.setRight(rightTree);
+    ArtworkNode.update(current);
     return current;
   }
 
   /**
-   * Helper method to find the successor of a node in a BST (to be used by the delete operation).
-   * The successor is defined as the smallest key in the right subtree. We assume by default that
-   * node is not null. If node does not have a right child, return node.getData().
+   * Rotates the subtree rooted at current to the right. The left child of current must not be null
    *
-   * @param current current node
+   * @param current "root" of the subtree to rotate
+   * @return the new "root" of the subtree, which is the former left child of current
+   */
+  protected static BSTNode<Artwork> rotateRight(BSTNode<Artwork> current) {
+    BSTNode<Artwork> left = current.getLeft();
+    current.setLeft(left.getRight());
+    left.setRight(current);
+    ArtworkNode.update(current);
+    ArtworkNode.update(left);
+    return left;
+  }
+
+  /**
+   * Rotates the subtree rooted at current to the left. The right child of current must not be null
    *
-   * @return returns without removing the key of the successor node
+   * @param current "root" of the subtree to rotate
+   * @return the new "root" of the subtree, which is the former right child of current
    */
+  protected static BSTNode<Artwork> rotateLeft(BSTNode<Artwork> current) {
+    BSTNode<Artwork> right = current.getRight();
+    current.setRight(right.getLeft());
+    right.setLeft(current);
+    ArtworkNode.update(current);
+    ArtworkNode.update(right);
+    return right;
+  }
 
-  protected static Artwork getSuccessor(BSTNode<Artwork> current) {
-    if (current == null)
-      return null;
+  /**
+   * In-order iterator over the artworks of a BST, skipping tombstones. The stack holds the nodes
+   * whose artwork and right subtree are still to be visited, the next node being on top, which is
+   * never a tombstone. Subtrees holding only tombstones are not visited.
+   */
+  private static class InOrderIterator implements Iterator<Artwork> {
+    private final ArrayDeque<BSTNode<Artwork>> stack = new ArrayDeque<BSTNode<Artwork>>();
+
+    /**
+     * Creates an iterator over the BST rooted at root
+     *
+     * @param root root of the BST to iterate over, may be null
+     */
+    private InOrderIterator(BSTNode<Artwork> root) {
+      pushLeftSpine(root);
+      skipSold();
+    }
+
+    /**
+     * Creates an iterator over the artworks greater than after in the BST rooted at root. The
+     * stack is filled by one descent: the nodes greater than after are pushed on the way down.
+     *
+     * @param root  root of the BST to iterate over, may be null
+     * @param after artwork after which the iteration starts, or null to start at the beginning
+     */
+    private InOrderIterator(BSTNode<Artwork> root, Artwork after) {
+      if (after == null) {
+        pushLeftSpine(root);
+        skipSold();
+        return;
+      }
+      BSTNode<Artwork> current = root;
+      while (ArtworkNode.countOf(current) > 0) {
+        if (current.getData().compareTo(after) > 0) {
+          stack.push(current);
+          current = current.getLeft();
+        } else
+          current = current.getRight();
+      }
+      skipSold();
+    }
+
+    /**
+     * Pushes current and all the nodes down its left spine on the stack
+     *
+     * @param current "root" of the subtree to visit next
+     */
+    private void pushLeftSpine(BSTNode<Artwork> current) {
+      while (ArtworkNode.countOf(current) > 0) {
+        stack.push(current);
+        current = current.getLeft();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public Artwork next() {
+      if (stack.isEmpty())
+        throw new NoSuchElementException("No more artworks in this museum");
+      BSTNode<Artwork> current = stack.pop();
+      pushLeftSpine(current.getRight());
+      skipSold();
+      return current.getData();
+    }
 
-    BSTNode<Artwork> temp = current.getRight();
-    while(temp.getLeft()!=null) {
-      temp=temp.getLeft();
+    /**
+     * Pops the tombstones off the top of the stack, visiting their right subtrees instead
+     */
+    private void skipSold() {
+      while (!stack.isEmpty() && ArtworkNode.isSold(stack.peek()))
+        pushLeftSpine(stack.pop().getRight());
     }
-    return temp.getData();
   }
 }
@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * This class benchmarks the lookup performance of a plain ArtMuseum against a self-adjusting
+ * (splay) ArtMuseum on skewed traffic, where the popularity of the artworks follows a Zipf
+ * distribution.
+ *
+ */
+public class ArtMuseumBenchmark {
+
+  private static final int CATALOG_SIZE = 200_000; // number of artworks in the catalog
+  private static final int LOOKUPS = 2_000_000; // number of timed lookups
+  private static final double ZIPF_EXPONENT = 1.1; // skew of the lookup traffic
+  private static final int ROUNDS = 5; // number of timed rounds, the first ones warm up the JIT
+
+  /**
+   * Creates a catalog of artworks with random years, costs and names
+   *
+   * @param size   number of artworks to create
+   * @param random source of randomness
+   * @return a list of distinct artworks in random order
+   */
+  protected static ArrayList<Artwork> randomCatalog(int size, Random random) {
+    ArrayList<Artwork> catalog = new ArrayList<Artwork>(size);
+    for (int i = 0; i < size; i++) {
+      catalog.add(new Artwork("Artwork " + i + ", Artist " + random.nextInt(1000),
+        1000 + random.nextInt(1025), 100 + random.nextInt(1_000_000)));
+    }
+    Collections.shuffle(catalog, random);
+    return catalog;
+  }
+
+  /**
+   * Draws lookup targets from the catalog. The artwork at index k of the catalog is drawn with a
+   * probability proportional to 1 / (k + 1)^exponent.
+   *
+   * @param catalog  artworks to draw from
+   * @param count    number of targets to draw
+   * @param exponent exponent of the Zipf distribution
+   * @param random   source of randomness
+   * @return an array of count lookup targets
+   */
+  protected static Artwork[] zipfTargets(ArrayList<Artwork> catalog, int count, double exponent,
+    Random random) {
+    double[] cumulative = new double[catalog.size()];
+    double total = 0.0;
+    for (int k = 0; k < cumulative.length; k++) {
+      total += 1.0 / Math.pow(k + 1, exponent);
+      cumulative[k] = total;
+    }
+    Artwork[] targets = new Artwork[count];
+    for (int i = 0; i < count; i++) {
+      double point = random.nextDouble() * total;
+      int low = 0;
+      int high = cumulative.length - 1;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (cumulative[middle] < point)
+          low = middle + 1;
+        else
+          high = middle;
+      }
+      targets[i] = catalog.get(low);
+    }
+    return targets;
+  }
+
+  /**
+   * Runs all the lookups against a museum and measures the elapsed time
+   *
+   * @param museum  museum to query
+   * @param targets artworks to look up
+   * @return average nanoseconds per lookup
+   */
+  protected static double timeLookups(ArtMuseum museum, Artwork[] targets) {
+    int found = 0;
+    long start = System.nanoTime();
+    for (Artwork target : targets) {
+      if (museum.lookup(target.getName(), target.getYear(), target.getCost()))
+        found++;
+    }
+    long elapsed = System.nanoTime() - start;
+    if (found != targets.length)
+      throw new IllegalStateException("lookup() missed artworks stored in the museum");
+    return (double) elapsed / targets.length;
+  }
+
+  /**
+   * Runs the benchmark and prints the average lookup time of each museum mode
+   *
+   * @param args input arguments if any
+   */
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    ArrayList<Artwork> catalog = randomCatalog(CATALOG_SIZE, random);
+    ArtMuseum plain = new ArtMuseum();
+    ArtMuseum splay = new ArtMuseum(true);
+    for (Artwork artwork : catalog) {
+      plain.addArtwork(artwork);
+      splay.addArtwork(artwork);
+    }
+    Artwork[] targets = zipfTargets(catalog, LOOKUPS, ZIPF_EXPONENT, random);
+    System.out.println("catalog size: " + CATALOG_SIZE + ", lookups: " + LOOKUPS
+      + ", zipf exponent: " + ZIPF_EXPONENT);
+    for (int round = 1; round <= ROUNDS; round++) {
+      System.out.printf("round %d: plain BST %.1f ns/lookup, splay %.1f ns/lookup%n", round,
+        timeLookups(plain, targets), timeLookups(splay, targets));
+    }
+  }
+}
@@ -0,0 +1,776 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is a standalone load generator for the museum. It builds a catalog of a configurable
+ * size, then drives a mix of add, lookup, lookupAll and buy requests from several threads at a
+ * target rate against a ShardedArtMuseum, a plain ArtMuseum guarded by a read-write lock, or an
+ * ArtMuseumServer over the loopback interface. It reports the throughput and the p50, p99 and
+ * p999 latencies of each operation.
+ *
+ * The requests are generated up front as a Workload, which can be written to a trace file and
+ * replayed later, so that different museums and configurations can be compared on exactly the
+ * same traffic.
+ *
+ * The load is open-loop: each thread schedules its requests at fixed intervals, and the latency
+ * of a request is measured from its scheduled time. A request delayed by a slow earlier request
+ * therefore counts its waiting time, instead of hiding it by sending less traffic.
+ *
+ * Usage: java ArtMuseumLoadGenerator [option=value]... with the options
+ * catalog (artworks loaded before the run, 200000), threads (8), operations (requests per
+ * thread, 250000), rate (total requests per second, 0 for as fast as possible), mix (percentages
+ * of add, lookup, lookupAll and buy requests, 10,70,10,10), target (sharded, locked, or server to
+ * start an embedded server and send the load over TCP, one connection per thread), seed (42),
+ * record (trace file to write the workload to) and replay (trace file to read the workload from,
+ * instead of generating it).
+ *
+ */
+public class ArtMuseumLoadGenerator {
+  private static final int TRACE_MAGIC = 0x41525457; // "ARTW"
+
+  /**
+   * Operations of the load
+   */
+  public enum Operation {
+    ADD, LOOKUP, LOOKUP_ALL, BUY
+  }
+
+  /**
+   * Museum which receives the load. Implementations must be thread-safe.
+   */
+  public interface Target {
+    /**
+     * Adds an artwork
+     *
+     * @param artwork artwork to add
+     * @return true if the artwork was added, false if it was already stored
+     */
+    boolean addArtwork(Artwork artwork);
+
+    /**
+     * Looks up an artwork
+     *
+     * @param name name of the artwork
+     * @param year year of creation of the artwork
+     * @param cost cost of the artwork
+     * @return true if the artwork is stored, false otherwise
+     */
+    boolean lookup(String name, int year, double cost);
+
+    /**
+     * Looks up the artworks of a year up to a maximum cost
+     *
+     * @param year year of creation of the artworks
+     * @param cost maximum cost of the artworks
+     * @return the number of matching artworks
+     */
+    int lookupAll(int year, double cost);
+
+    /**
+     * Buys an artwork
+     *
+     * @param name name of the artwork
+     * @param year year of creation of the artwork
+     * @param cost cost of the artwork
+     * @return true if the artwork was bought, false if it was not stored
+     */
+    boolean buyArtwork(String name, int year, double cost);
+
+    /**
+     * Releases the resources held for the calling thread, such as a connection. Each thread of
+     * the load calls it once it sent its requests. The thread may send requests again afterwards.
+     */
+    default void release() {
+    }
+  }
+
+  /**
+   * Creates a target sending the load to a sharded museum
+   *
+   * @param museum museum receiving the load
+   * @return the target of museum
+   */
+  public static Target sharded(ShardedArtMuseum museum) {
+    return new Target() {
+      public boolean addArtwork(Artwork artwork) {
+        return museum.addArtwork(artwork);
+      }
+
+      public boolean lookup(String name, int year, double cost) {
+        return museum.lookup(name, year, cost);
+      }
+
+      public int lookupAll(int year, double cost) {
+        return museum.lookupAll(year, cost).size();
+      }
+
+      public boolean buyArtwork(String name, int year, double cost) {
+        try {
+          museum.buyArtwork(name, year, cost);
+          return true;
+        } catch (NoSuchElementException e) {
+          return false;
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a target sending the load to a single museum guarded by a read-write lock. Lookups
+   * share the read lock, unless the museum is self-adjusting, since its lookups restructure the
+   * tree.
+   *
+   * @param museum museum receiving the load
+   * @return the target of museum
+   */
+  public static Target locked(ArtMuseum museum) {
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    Lock readLock = museum.isSelfAdjusting() ? lock.writeLock() : lock.readLock();
+    Lock writeLock = lock.writeLock();
+    return new Target() {
+      public boolean addArtwork(Artwork artwork) {
+        writeLock.lock();
+        try {
+          return museum.addArtwork(artwork);
+        } finally {
+          writeLock.unlock();
+        }
+      }
+
+      public boolean lookup(String name, int year, double cost) {
+        readLock.lock();
+        try {
+          return museum.lookup(name, year, cost);
+        } finally {
+          readLock.unlock();
+        }
+      }
+
+      public int lookupAll(int year, double cost) {
+        readLock.lock();
+        try {
+          return museum.lookupAll(year, cost).size();
+        } finally {
+          readLock.unlock();
+        }
+      }
+
+      public boolean buyArtwork(String name, int year, double cost) {
+        writeLock.lock();
+        try {
+          museum.buyArtwork(name, year, cost);
+          return true;
+        } catch (NoSuchElementException e) {
+          return false;
+        } finally {
+          writeLock.unlock();
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a target sending the load over TCP to an ArtMuseumServer. Each thread of the load
+   * opens its own connection on its first request, and closes it when it releases the target. A
+   * request rejected by the server counts as a miss.
+   *
+   * @param address address of the server
+   * @return the target of the server
+   */
+  public static Target remote(InetSocketAddress address) {
+    ThreadLocal<ArtMuseumServer.Client> clients = new ThreadLocal<ArtMuseumServer.Client>();
+    return new Target() {
+      // connection of the calling thread, opened on its first request
+      private ArtMuseumServer.Client client() throws IOException {
+        ArtMuseumServer.Client client = clients.get();
+        if (client == null) {
+          client = new ArtMuseumServer.Client(address);
+          clients.set(client);
+        }
+        return client;
+      }
+
+      public boolean addArtwork(Artwork artwork) {
+        try {
+          return client().addArtwork(artwork);
+        } catch (ArtMuseumServer.RejectedRequestException e) {
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      public boolean lookup(String name, int year, double cost) {
+        try {
+          return client().lookup(name, year, cost);
+        } catch (ArtMuseumServer.RejectedRequestException e) {
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      public int lookupAll(int year, double cost) {
+        try {
+          return client().lookupAll(year, cost).size();
+        } catch (ArtMuseumServer.RejectedRequestException e) {
+          return 0;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      public boolean buyArtwork(String name, int year, double cost) {
+        try {
+          client().buyArtwork(name, year, cost);
+          return true;
+        } catch (NoSuchElementException | ArtMuseumServer.RejectedRequestException e) {
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      public void release() {
+        ArtMuseumServer.Client client = clients.get();
+        if (client == null)
+          return;
+        clients.remove();
+        try {
+          client.close();
+        } catch (IOException e) {
+          // the connection is lost either way
+        }
+      }
+    };
+  }
+
+  /**
+   * A request of the load. A LOOKUP_ALL request has no name, and its cost is the maximum cost.
+   */
+  public static class Request {
+    private final Operation operation; // operation of this request
+    private final String name; // name of the artwork, null for LOOKUP_ALL
+    private final int year; // year of creation of the artwork
+    private final double cost; // cost of the artwork
+
+    /**
+     * Creates a request
+     *
+     * @param operation operation of the request
+     * @param name      name of the artwork, null for LOOKUP_ALL
+     * @param year      year of creation of the artwork
+     * @param cost      cost of the artwork, or maximum cost for LOOKUP_ALL
+     */
+    public Request(Operation operation, String name, int year, double cost) {
+      this.operation = operation;
+      this.name = name;
+      this.year = year;
+      this.cost = cost;
+    }
+
+    /**
+     * Getter of the operation of this request
+     *
+     * @return the operation of this request
+     */
+    public Operation getOperation() {
+      return operation;
+    }
+
+    /**
+     * Sends this request to a target
+     *
+     * @param target museum receiving the request
+     * @return true if the request hit, meaning the artwork was added, found or bought, or at least
+     *         one artwork was found for LOOKUP_ALL
+     */
+    protected boolean send(Target target) {
+      switch (operation) {
+        case ADD:
+          return target.addArtwork(new Artwork(name, year, cost));
+        case LOOKUP:
+          return target.lookup(name, year, cost);
+        case LOOKUP_ALL:
+          return target.lookupAll(year, cost) > 0;
+        default:
+          return target.buyArtwork(name, year, cost);
+      }
+    }
+  }
+
+  /**
+   * A workload: the catalog loaded before the run, and the requests sent by each thread
+   */
+  public static class Workload {
+    private final List<Artwork> catalog; // artworks loaded before the run
+    private final List<List<Request>> requests; // requests of each thread, in order
+
+    /**
+     * Creates a workload
+     *
+     * @param catalog  artworks loaded before the run
+     * @param requests requests of each thread, in order
+     */
+    public Workload(List<Artwork> catalog, List<List<Request>> requests) {
+      this.catalog = Collections.unmodifiableList(catalog);
+      this.requests = Collections.unmodifiableList(requests);
+    }
+
+    /**
+     * Getter of the catalog of this workload
+     *
+     * @return an unmodifiable list of the artworks loaded before the run
+     */
+    public List<Artwork> getCatalog() {
+      return catalog;
+    }
+
+    /**
+     * Getter of the requests of this workload
+     *
+     * @return an unmodifiable list of the requests of each thread
+     */
+    public List<List<Request>> getRequests() {
+      return requests;
+    }
+
+    /**
+     * Writes this workload to a trace file. The trace starts with the magic number 0x41525457
+     * ("ARTW"), followed by the catalog as its size and its artworks, then the number of threads
+     * and, for each thread, its number of requests and its requests. An artwork is written as its
+     * name, year and cost, and a request as its operation ordinal, name (an empty name for
+     * LOOKUP_ALL), year and cost.
+     *
+     * @param file trace file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+      try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+        out.writeInt(TRACE_MAGIC);
+        out.writeInt(catalog.size());
+        for (Artwork artwork : catalog) {
+          out.writeUTF(artwork.getName());
+          out.writeInt(artwork.getYear());
+          out.writeDouble(artwork.getCost());
+        }
+        out.writeInt(requests.size());
+        for (List<Request> thread : requests) {
+          out.writeInt(thread.size());
+          for (Request request : thread) {
+            out.writeByte(request.operation.ordinal());
+            out.writeUTF(request.name == null ? "" : request.name);
+            out.writeInt(request.year);
+            out.writeDouble(request.cost);
+          }
+        }
+      }
+    }
+
+    /**
+     * Reads a workload back from a trace file written by write()
+     *
+     * @param file trace file to read
+     * @return the workload of the trace
+     * @throws IOException if the file cannot be read or is not a valid trace
+     */
+    public static Workload read(Path file) throws IOException {
+      try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (in.readInt() != TRACE_MAGIC)
+          throw new IOException("Not a workload trace");
+        int catalogSize = in.readInt();
+        ArrayList<Artwork> catalog = new ArrayList<Artwork>(Math.max(catalogSize, 0));
+        try {
+          for (int i = 0; i < catalogSize; i++)
+            catalog.add(new Artwork(in.readUTF(), in.readInt(), in.readDouble()));
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Invalid artwork in the trace: " + e.getMessage(), e);
+        }
+        Operation[] operations = Operation.values();
+        int threads = in.readInt();
+        ArrayList<List<Request>> requests = new ArrayList<List<Request>>();
+        for (int t = 0; t < threads; t++) {
+          int count = in.readInt();
+          ArrayList<Request> thread = new ArrayList<Request>(Math.max(count, 0));
+          for (int i = 0; i < count; i++) {
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= operations.length)
+              throw new IOException("Invalid operation " + ordinal + " in the trace");
+            String name = in.readUTF();
+            thread.add(new Request(operations[ordinal], name.isEmpty() ? null : name,
+              in.readInt(), in.readDouble()));
+          }
+          requests.add(thread);
+        }
+        return new Workload(catalog, requests);
+      }
+    }
+  }
+
+  /**
+   * Result of a run: the requests and the sorted latencies of each operation
+   */
+  public static class Report {
+    private final long elapsedNanos; // duration of the run
+    private final EnumMap<Operation, long[]> latencies; // sorted latencies in ns per operation
+    private final EnumMap<Operation, Integer> hits; // number of hits per operation
+
+    /**
+     * Creates the report of a run
+     *
+     * @param elapsedNanos duration of the run
+     * @param latencies    sorted latencies in nanoseconds per operation
+     * @param hits         number of hits per operation
+     */
+    private Report(long elapsedNanos, EnumMap<Operation, long[]> latencies,
+      EnumMap<Operation, Integer> hits) {
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+      this.hits = hits;
+    }
+
+    /**
+     * Gets the number of requests of an operation
+     *
+     * @param operation operation
+     * @return the number of requests of operation which were sent
+     */
+    public int getCount(Operation operation) {
+      return latencies.get(operation).length;
+    }
+
+    /**
+     * Gets the number of requests of an operation which hit
+     *
+     * @param operation operation
+     * @return the number of requests of operation which added, found or bought an artwork
+     */
+    public int getHits(Operation operation) {
+      return hits.get(operation);
+    }
+
+    /**
+     * Gets the throughput of the run
+     *
+     * @return the number of requests completed per second, over all the operations
+     */
+    public double getThroughput() {
+      int total = 0;
+      for (long[] operationLatencies : latencies.values())
+        total += operationLatencies.length;
+      return total * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    /**
+     * Gets a latency percentile of an operation, with the nearest-rank method
+     *
+     * @param operation operation
+     * @param quantile  quantile of the percentile, for instance 0.99 for p99
+     * @return the latency in nanoseconds below which quantile of the requests of operation
+     *         completed, 0 if there were no such requests
+     */
+    public long getPercentile(Operation operation, double quantile) {
+      long[] sorted = latencies.get(operation);
+      if (sorted.length == 0)
+        return 0;
+      int rank = (int) Math.ceil(quantile * sorted.length);
+      return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    /**
+     * Returns a table of the results of the run, one line per operation with its count, its hits
+     * and its p50, p99, p999 and maximum latencies in microseconds
+     *
+     * @return this report as a String
+     */
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append(String.format("throughput: %.0f requests/s over %.2f s%n", getThroughput(),
+        elapsedNanos / 1e9));
+      builder.append(String.format("%-10s %10s %10s %10s %10s %10s %10s%n", "operation", "count",
+        "hits", "p50 us", "p99 us", "p999 us", "max us"));
+      for (Operation operation : Operation.values()) {
+        builder.append(String.format("%-10s %10d %10d %10.1f %10.1f %10.1f %10.1f%n", operation,
+          getCount(operation), getHits(operation), getPercentile(operation, 0.5) / 1e3,
+          getPercentile(operation, 0.99) / 1e3, getPercentile(operation, 0.999) / 1e3,
+          getPercentile(operation, 1.0) / 1e3));
+      }
+      return builder.toString();
+    }
+  }
+
+  /**
+   * Generates a workload. Lookups and lookupAlls target random artworks of the catalog, one in ten
+   * lookups targeting a missing artwork. Each thread adds new artworks of its own and buys the
+   * artworks of its own slice of the catalog, so buys only miss once a slice is sold out.
+   *
+   * @param catalogSize         number of artworks loaded before the run
+   * @param threads             number of threads sending requests
+   * @param operationsPerThread number of requests sent by each thread
+   * @param mix                 weights of the ADD, LOOKUP, LOOKUP_ALL and BUY operations
+   * @param seed                seed of the random generators
+   * @return the generated workload
+   * @throws IllegalArgumentException if a size is negative, if threads is not positive, or if mix
+   *                                  does not hold one non-negative weight per operation with a
+   *                                  positive sum
+   */
+  public static Workload generate(int catalogSize, int threads, int operationsPerThread,
+    int[] mix, long seed) {
+    if (catalogSize < 0 || operationsPerThread < 0 || threads <= 0)
+      throw new IllegalArgumentException("Invalid workload size");
+    if (mix.length != Operation.values().length || Arrays.stream(mix).anyMatch(w -> w < 0)
+      || Arrays.stream(mix).sum() <= 0)
+      throw new IllegalArgumentException("Invalid operation mix " + Arrays.toString(mix));
+    int totalWeight = Arrays.stream(mix).sum();
+    ArrayList<Artwork> catalog = ArtMuseumBenchmark.randomCatalog(catalogSize, new Random(seed));
+    ArrayList<List<Request>> requests = new ArrayList<List<Request>>(threads);
+    for (int t = 0; t < threads; t++) {
+      Random random = new Random(seed + t + 1);
+      ArrayList<Request> thread = new ArrayList<Request>(operationsPerThread);
+      int nextBuy = t; // next catalog index of the slice of this thread
+      for (int i = 0; i < operationsPerThread; i++) {
+        int draw = random.nextInt(totalWeight);
+        Operation operation = Operation.ADD;
+        while (draw >= mix[operation.ordinal()]) {
+          draw -= mix[operation.ordinal()];
+          operation = Operation.values()[operation.ordinal() + 1];
+        }
+        Artwork artwork = catalog.isEmpty() ? null : catalog.get(random.nextInt(catalog.size()));
+        if (operation == Operation.ADD || artwork == null
+          || (operation == Operation.LOOKUP && random.nextInt(10) == 0)
+          || (operation == Operation.BUY && t >= catalog.size())) {
+          // a new artwork, which is missing unless it is added
+          thread.add(new Request(operation == Operation.LOOKUP_ALL ? Operation.LOOKUP : operation,
+            "Load artwork " + t + "-" + i, 1000 + random.nextInt(1025),
+            100 + random.nextInt(1_000_000)));
+        } else if (operation == Operation.BUY) {
+          if (nextBuy >= catalog.size())
+            nextBuy = t; // the slice is sold out, buy it again
+          Artwork bought = catalog.get(nextBuy);
+          nextBuy += threads;
+          thread.add(new Request(operation, bought.getName(), bought.getYear(), bought.getCost()));
+        } else {
+          thread.add(new Request(operation, operation == Operation.LOOKUP ? artwork.getName()
+            : null, artwork.getYear(), artwork.getCost()));
+        }
+      }
+      requests.add(thread);
+    }
+    return new Workload(catalog, requests);
+  }
+
+  /**
+   * Runs a workload against a target. The catalog is loaded first, then every thread of the
+   * workload sends its requests at its share of the target rate. Each thread releases the target
+   * once it is done.
+   *
+   * @param workload workload to run
+   * @param target   museum receiving the load
+   * @param rate     total number of requests per second, 0 to send them as fast as possible
+   * @return the report of the run
+   * @throws IllegalArgumentException if rate is negative
+   * @throws InterruptedException     if the calling thread is interrupted while waiting for the
+   *                                  run to complete
+   */
+  public static Report run(Workload workload, Target target, double rate)
+    throws InterruptedException {
+    if (!(rate >= 0))
+      throw new IllegalArgumentException("Invalid rate. It must not be negative");
+    try {
+      for (Artwork artwork : workload.getCatalog())
+        target.addArtwork(artwork);
+    } finally {
+      target.release();
+    }
+    int threads = workload.getRequests().size();
+    // interval between two requests of a thread, 0 to send them back to back
+    long interval = rate == 0 ? 0 : (long) (threads * 1e9 / rate);
+    long[][] latencies = new long[threads][];
+    boolean[][] hits = new boolean[threads][];
+    RuntimeException[] failures = new RuntimeException[threads];
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    ArrayList<Thread> workers = new ArrayList<Thread>(threads);
+    for (int t = 0; t < threads; t++) {
+      int index = t;
+      List<Request> requests = workload.getRequests().get(t);
+      latencies[t] = new long[requests.size()];
+      hits[t] = new boolean[requests.size()];
+      Thread worker = new Thread(() -> {
+        ready.countDown();
+        try {
+          start.await();
+          long scheduled = System.nanoTime();
+          for (int i = 0; i < requests.size(); i++) {
+            if (interval > 0) {
+              long wait;
+              while ((wait = scheduled - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+            } else
+              scheduled = System.nanoTime();
+            hits[index][i] = requests.get(i).send(target);
+            latencies[index][i] = System.nanoTime() - scheduled;
+            scheduled += interval;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+          failures[index] = e;
+        } finally {
+          target.release();
+        }
+      }, "load-generator-" + t);
+      workers.add(worker);
+      worker.start();
+    }
+    ready.await();
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers)
+      worker.join();
+    long elapsed = System.nanoTime() - begin;
+    for (RuntimeException failure : failures) {
+      if (failure != null)
+        throw new IllegalStateException("A load generator thread failed", failure);
+    }
+    return buildReport(workload, elapsed, latencies, hits);
+  }
+
+  /**
+   * Groups the latencies and the hits of all the threads by operation
+   *
+   * @param workload  workload which was run
+   * @param elapsed   duration of the run in nanoseconds
+   * @param latencies latencies of the requests of each thread
+   * @param hits      hits of the requests of each thread
+   * @return the report of the run
+   */
+  private static Report buildReport(Workload workload, long elapsed, long[][] latencies,
+    boolean[][] hits) {
+    EnumMap<Operation, long[]> byOperation = new EnumMap<Operation, long[]>(Operation.class);
+    EnumMap<Operation, Integer> hitsByOperation = new EnumMap<Operation, Integer>(Operation.class);
+    int[] counts = new int[Operation.values().length];
+    for (List<Request> requests : workload.getRequests()) {
+      for (Request request : requests)
+        counts[request.operation.ordinal()]++;
+    }
+    for (Operation operation : Operation.values()) {
+      byOperation.put(operation, new long[counts[operation.ordinal()]]);
+      hitsByOperation.put(operation, 0);
+    }
+    int[] filled = new int[counts.length];
+    for (int t = 0; t < latencies.length; t++) {
+      List<Request> requests = workload.getRequests().get(t);
+      for (int i = 0; i < latencies[t].length; i++) {
+        Operation operation = requests.get(i).operation;
+        byOperation.get(operation)[filled[operation.ordinal()]++] = latencies[t][i];
+        if (hits[t][i])
+          hitsByOperation.merge(operation, 1, Integer::sum);
+      }
+    }
+    for (long[] operationLatencies : byOperation.values())
+      Arrays.sort(operationLatencies);
+    return new Report(elapsed, byOperation, hitsByOperation);
+  }
+
+  /**
+   * Parses the options, generates or replays the workload, runs it and prints the report
+   *
+   * @param args options as option=value pairs, see the description of this class
+   * @throws IOException          if a trace file cannot be read or written
+   * @throws InterruptedException if the run is interrupted
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int catalogSize = 200_000;
+    int threads = 8;
+    int operations = 250_000;
+    double rate = 0;
+    int[] mix = {10, 70, 10, 10};
+    String targetName = "sharded";
+    long seed = 42;
+    Path record = null;
+    Path replay = null;
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (equals < 0)
+        throw new IllegalArgumentException("Expected option=value instead of " + arg);
+      String value = arg.substring(equals + 1);
+      switch (arg.substring(0, equals)) {
+        case "catalog":
+          catalogSize = Integer.parseInt(value);
+          break;
+        case "threads":
+          threads = Integer.parseInt(value);
+          break;
+        case "operations":
+          operations = Integer.parseInt(value);
+          break;
+        case "rate":
+          rate = Double.parseDouble(value);
+          break;
+        case "mix":
+          mix = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+          break;
+        case "target":
+          targetName = value;
+          break;
+        case "seed":
+          seed = Long.parseLong(value);
+          break;
+        case "record":
+          record = Paths.get(value);
+          break;
+        case "replay":
+          replay = Paths.get(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    Target target;
+    ArtMuseumServer server = null;
+    if (targetName.equals("sharded"))
+      target = sharded(new ShardedArtMuseum());
+    else if (targetName.equals("locked"))
+      target = locked(new ArtMuseum());
+    else if (targetName.equals("server")) {
+      server = new ArtMuseumServer(new ArtMuseum(), 0);
+      target = remote(server.getAddress());
+    } else
+      throw new IllegalArgumentException("Unknown target " + targetName);
+    Workload workload = replay != null ? Workload.read(replay)
+      : generate(catalogSize, threads, operations, mix, seed);
+    if (record != null)
+      workload.write(record);
+    System.out.println("target: " + targetName + ", catalog: " + workload.getCatalog().size()
+      + ", threads: " + workload.getRequests().size() + ", rate: "
+      + (rate == 0 ? "unbounded" : rate + " requests/s"));
+    try {
+      System.out.print(run(workload, target, rate));
+    } finally {
+      if (server != null)
+        server.close();
+    }
+  }
+}
@@ -0,0 +1,547 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class serves an ArtMuseum over TCP on the loopback interface, so that it can be called and
+ * load tested out of process. Each connection is served by its own task, on a virtual thread when
+ * the runtime supports them and on a pooled platform thread otherwise. The museum is guarded by a
+ * read-write lock, so lookups of different connections run in parallel.
+ *
+ * Serving tens of thousands of concurrent clients requires Java 21 or later, for the virtual
+ * threads. On older runtimes, such as the Java 17 this project builds with, every open connection
+ * holds a platform thread with its own stack, so the number of concurrent clients is bounded by
+ * the threads the system can run, typically a few thousand.
+ *
+ * The protocol is made of UTF-8 lines, with fields separated by tabs:
+ * - "LOOKUP name year cost" answers "OK true" or "OK false"
+ * - "LOOKUPALL year cost" answers "OK n" followed by n lines "name year cost"
+ * - "ADD name year cost" answers "OK true", or "OK false" if the artwork was already stored
+ * - "BUY name year cost" answers "OK true", or "OK false" if the artwork is not stored
+ * - "BEST" answers "OK name year cost", or "OK" if the museum is empty
+ * - "QUIT" closes the connection
+ * A malformed request, such as a request with the wrong number of fields, answers "ERR message".
+ * Names cannot contain tabs or line breaks, which the Client rejects before sending a request.
+ *
+ * Requests can be pipelined: a client may send many requests without waiting, and the responses
+ * come back in the same order. Responses are flushed once all the requests received so far are
+ * answered, so a pipelined batch is answered in as few writes as possible.
+ *
+ */
+public class ArtMuseumServer implements Closeable {
+  private final ArtMuseum museum; // museum served
+  private final Lock readLock; // guards the lookups of museum
+  private final Lock writeLock; // guards the changes of museum
+  private final ServerSocket serverSocket; // listening socket on the loopback interface
+  private final ExecutorService connections; // runs one task per connection
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet(); // open connections
+  private final Thread acceptor; // accepts the connections
+
+  /**
+   * Creates a server for a museum and starts listening on the loopback interface. The museum
+   * must not be used by anything else while it is served.
+   *
+   * @param museum museum to serve
+   * @param port   port to listen on, 0 to pick a free port
+   * @throws NullPointerException if museum is null
+   * @throws IOException          if the port cannot be bound
+   */
+  public ArtMuseumServer(ArtMuseum museum, int port) throws IOException {
+    if (museum == null)
+      throw new NullPointerException("museum is null");
+    this.museum = museum;
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // lookups of a self-adjusting museum restructure its tree
+    this.readLock = museum.isSelfAdjusting() ? lock.writeLock() : lock.readLock();
+    this.writeLock = lock.writeLock();
+    this.serverSocket =
+      new ServerSocket(port, 1 << 16, InetAddress.getLoopbackAddress());
+    this.connections = newConnectionExecutor();
+    this.acceptor = new Thread(this::acceptConnections, "art-museum-server-acceptor");
+    acceptor.start();
+  }
+
+  /**
+   * Creates the executor running the connections: one virtual thread per connection if the
+   * runtime supports them (Java 21 and later), or else a cached pool of daemon platform threads.
+   * The virtual thread executor is looked up reflectively so that this class also compiles and
+   * runs on older runtimes.
+   *
+   * @return the executor of the connections
+   */
+  private static ExecutorService newConnectionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+        .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "art-museum-server-connection");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Gets the port this server listens on
+   *
+   * @return the local port of this server
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Gets the address of this server
+   *
+   * @return the loopback address and port of this server
+   */
+  public InetSocketAddress getAddress() {
+    return new InetSocketAddress(serverSocket.getInetAddress(), getPort());
+  }
+
+  /**
+   * Gets the number of connections this server is serving
+   *
+   * @return the number of open connections
+   */
+  public int getConnectionCount() {
+    return clients.size();
+  }
+
+  /**
+   * Stops this server: stops accepting connections, closes the open ones and waits briefly for
+   * their tasks to end. The server keeps the JVM alive until it is closed.
+   *
+   * @throws IOException if the listening socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket client : clients)
+      closeQuietly(client);
+    connections.shutdown();
+    try {
+      connections.awaitTermination(5, TimeUnit.SECONDS);
+      acceptor.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Accepts connections until the listening socket is closed, and hands each one to a task
+   */
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket client = serverSocket.accept();
+        client.setTcpNoDelay(true);
+        clients.add(client);
+        connections.execute(() -> serve(client));
+      } catch (IOException e) {
+        // the listening socket was closed, or the connection was reset before it was accepted
+      } catch (RuntimeException e) {
+        // the executor was shut down while a connection was accepted
+        return;
+      }
+    }
+  }
+
+  /**
+   * Serves the requests of a connection until the client closes it or quits
+   *
+   * @param client connection to serve
+   */
+  private void serve(Socket client) {
+    try (BufferedReader in = new BufferedReader(
+      new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+      BufferedWriter out = new BufferedWriter(
+        new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+      String request;
+      while ((request = in.readLine()) != null) {
+        if (request.equals("QUIT"))
+          break;
+        out.write(handle(request));
+        // answer a pipelined batch of requests in one write
+        if (!in.ready())
+          out.flush();
+      }
+      out.flush();
+    } catch (SocketException e) {
+      // the connection was reset by the client, or closed by close()
+    } catch (IOException e) {
+      // the connection failed, there is nobody left to answer
+    } finally {
+      clients.remove(client);
+      closeQuietly(client);
+    }
+  }
+
+  /**
+   * Handles a request and builds its response
+   *
+   * @param request request line, without its line break
+   * @return the response lines, each ending with a line break
+   */
+  protected String handle(String request) {
+    String[] fields = request.split("\t", -1);
+    try {
+      switch (fields[0]) {
+        case "LOOKUP": {
+          Artwork artwork = parseArtwork(fields);
+          readLock.lock();
+          try {
+            return "OK\t" + museum.lookup(artwork.getName(), artwork.getYear(), artwork.getCost())
+              + "\n";
+          } finally {
+            readLock.unlock();
+          }
+        }
+        case "LOOKUPALL": {
+          if (fields.length != 3)
+            throw new IllegalArgumentException("Expected the fields LOOKUPALL year cost");
+          int year = parseYear(fields[1]);
+          double cost = parseCost(fields[2]);
+          ArrayList<Artwork> artworks;
+          readLock.lock();
+          try {
+            artworks = museum.lookupAll(year, cost);
+          } finally {
+            readLock.unlock();
+          }
+          StringBuilder response = new StringBuilder("OK\t").append(artworks.size()).append('\n');
+          for (Artwork artwork : artworks)
+            response.append(format(artwork)).append('\n');
+          return response.toString();
+        }
+        case "ADD": {
+          Artwork artwork = parseArtwork(fields);
+          writeLock.lock();
+          try {
+            return "OK\t" + museum.addArtwork(artwork) + "\n";
+          } finally {
+            writeLock.unlock();
+          }
+        }
+        case "BUY": {
+          Artwork artwork = parseArtwork(fields);
+          writeLock.lock();
+          try {
+            museum.buyArtwork(artwork.getName(), artwork.getYear(), artwork.getCost());
+            return "OK\ttrue\n";
+          } catch (NoSuchElementException e) {
+            return "OK\tfalse\n";
+          } finally {
+            writeLock.unlock();
+          }
+        }
+        case "BEST": {
+          if (fields.length != 1)
+            throw new IllegalArgumentException("Expected no fields after BEST");
+          Artwork best;
+          readLock.lock();
+          try {
+            best = museum.getBestArtwork();
+          } finally {
+            readLock.unlock();
+          }
+          return best == null ? "OK\n" : "OK\t" + format(best) + "\n";
+        }
+        default:
+          throw new IllegalArgumentException("Unknown request " + fields[0]);
+      }
+    } catch (IllegalArgumentException e) {
+      return "ERR\t" + e.getMessage() + "\n";
+    }
+  }
+
+  /**
+   * Parses the artwork of a LOOKUP, ADD or BUY request
+   *
+   * @param fields fields of the request: the request name, the artwork name, year and cost
+   * @return the artwork of the request
+   * @throws IllegalArgumentException if the fields are malformed, or if the Artwork constructor
+   *                                  rejects them
+   */
+  private static Artwork parseArtwork(String[] fields) {
+    if (fields.length != 4)
+      throw new IllegalArgumentException("Expected the fields " + fields[0] + " name year cost");
+    return new Artwork(fields[1], parseYear(fields[2]), parseCost(fields[3]));
+  }
+
+  /**
+   * Parses the year field of a request
+   *
+   * @param field field to parse
+   * @return the year
+   * @throws IllegalArgumentException if field is not an integer
+   */
+  private static int parseYear(String field) {
+    try {
+      return Integer.parseInt(field);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid year " + field);
+    }
+  }
+
+  /**
+   * Parses the cost field of a request
+   *
+   * @param field field to parse
+   * @return the cost
+   * @throws IllegalArgumentException if field is not a finite number
+   */
+  private static double parseCost(String field) {
+    double cost;
+    try {
+      cost = Double.parseDouble(field);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cost " + field);
+    }
+    // parseDouble() accepts NaN and Infinity, which are not prices
+    if (!Double.isFinite(cost))
+      throw new IllegalArgumentException("Invalid cost " + field);
+    return cost;
+  }
+
+  /**
+   * Formats an artwork as the fields of a response
+   *
+   * @param artwork artwork to format
+   * @return the name, year and cost of artwork separated by tabs
+   */
+  protected static String format(Artwork artwork) {
+    return artwork.getName() + "\t" + artwork.getYear() + "\t" + artwork.getCost();
+  }
+
+  /**
+   * Closes a socket, ignoring the failures
+   *
+   * @param socket socket to close
+   */
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // the socket is unusable anyway
+    }
+  }
+
+  /**
+   * Blocking client of an ArtMuseumServer, holding one connection. A client must not be used by
+   * several threads at the same time.
+   */
+  public static class Client implements Closeable {
+    private final Socket socket; // connection to the server
+    private final BufferedReader in; // responses of the server
+    private final BufferedWriter out; // requests to the server
+
+    /**
+     * Connects to a server
+     *
+     * @param address address of the server
+     * @throws IOException if the connection fails
+     */
+    public Client(InetSocketAddress address) throws IOException {
+      socket = new Socket(address.getAddress(), address.getPort());
+      socket.setTcpNoDelay(true);
+      in = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      out = new BufferedWriter(
+        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks whether the museum contains an artwork
+     *
+     * @param name name of the artwork
+     * @param year year of creation of the artwork
+     * @param cost cost of the artwork
+     * @return true if the artwork is stored in the museum, false otherwise
+     * @throws IllegalArgumentException if name contains a tab or a line break
+     * @throws IOException              if the request fails
+     * @throws RejectedRequestException if the server rejects the request
+     */
+    public boolean lookup(String name, int year, double cost)
+      throws IOException, RejectedRequestException {
+      return Boolean.parseBoolean(call("LOOKUP\t" + checkName(name) + "\t" + year + "\t" + cost));
+    }
+
+    /**
+     * Gets the artworks of the museum created in a year which cost at most a given cost
+     *
+     * @param year year of creation of the artworks
+     * @param cost maximum cost of the artworks
+     * @return the matching artworks
+     * @throws IOException              if the request fails
+     * @throws RejectedRequestException if the server rejects the request
+     */
+    public ArrayList<Artwork> lookupAll(int year, double cost)
+      throws IOException, RejectedRequestException {
+      int count = Integer.parseInt(call("LOOKUPALL\t" + year + "\t" + cost));
+      ArrayList<Artwork> artworks = new ArrayList<Artwork>(count);
+      for (int i = 0; i < count; i++)
+        artworks.add(parse(in.readLine()));
+      return artworks;
+    }
+
+    /**
+     * Adds an artwork to the museum
+     *
+     * @param artwork artwork to add
+     * @return true if the artwork was added, false if it was already stored
+     * @throws IllegalArgumentException if the name of artwork contains a tab or a line break
+     * @throws IOException              if the request fails
+     * @throws RejectedRequestException if the server rejects the request
+     */
+    public boolean addArtwork(Artwork artwork) throws IOException, RejectedRequestException {
+      checkName(artwork.getName());
+      return Boolean.parseBoolean(call("ADD\t" + format(artwork)));
+    }
+
+    /**
+     * Buys an artwork from the museum
+     *
+     * @param name name of the artwork
+     * @param year year of creation of the artwork
+     * @param cost cost of the artwork
+     * @throws NoSuchElementException   if the artwork is not stored in the museum
+     * @throws IllegalArgumentException if name contains a tab or a line break
+     * @throws IOException              if the request fails
+     * @throws RejectedRequestException if the server rejects the request
+     */
+    public void buyArtwork(String name, int year, double cost)
+      throws IOException, RejectedRequestException {
+      if (!Boolean.parseBoolean(call("BUY\t" + checkName(name) + "\t" + year + "\t" + cost)))
+        throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+    }
+
+    /**
+     * Gets the best artwork of the museum
+     *
+     * @return the largest artwork of the museum, or null if it is empty
+     * @throws IOException              if the request fails
+     * @throws RejectedRequestException if the server rejects the request
+     */
+    public Artwork getBestArtwork() throws IOException, RejectedRequestException {
+      String fields = call("BEST");
+      return fields.isEmpty() ? null : parse(fields);
+    }
+
+    /**
+     * Closes the connection
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+
+    /**
+     * Checks that a name can be sent in a request. A tab or a line break in a name would shift its
+     * fields or start another request, and the responses would no longer match the requests.
+     *
+     * @param name name of an artwork
+     * @return name
+     * @throws IllegalArgumentException if name contains a tab or a line break
+     */
+    private static String checkName(String name) {
+      if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0)
+        throw new IllegalArgumentException("Invalid name. It cannot contain tabs or line breaks");
+      return name;
+    }
+
+    /**
+     * Sends a request and reads the status line of its response
+     *
+     * @param request request line, without its line break
+     * @return the fields of the status line after "OK", empty if there are none
+     * @throws IOException              if the connection fails
+     * @throws RejectedRequestException if the server answers an error
+     */
+    private String call(String request) throws IOException, RejectedRequestException {
+      out.write(request);
+      out.write('\n');
+      out.flush();
+      String response = in.readLine();
+      if (response == null)
+        throw new IOException("Connection closed by the server");
+      if (response.startsWith("ERR"))
+        throw new RejectedRequestException(response.substring(Math.min(4, response.length())));
+      return response.length() > 3 ? response.substring(3) : "";
+    }
+
+    /**
+     * Parses the fields of an artwork in a response
+     *
+     * @param fields name, year and cost separated by tabs
+     * @return the artwork
+     * @throws IOException if the fields are malformed
+     */
+    private static Artwork parse(String fields) throws IOException {
+      String[] parts = fields == null ? new String[0] : fields.split("\t", -1);
+      if (parts.length != 3)
+        throw new IOException("Malformed artwork in the response: " + fields);
+      try {
+        return new Artwork(parts[0], Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Malformed artwork in the response: " + fields, e);
+      }
+    }
+  }
+
+  /**
+   * Thrown by a Client when the server answers "ERR" to a malformed request. The connection stays
+   * usable, so the caller may count the request as failed and go on.
+   */
+  public static class RejectedRequestException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception of a rejected request
+     *
+     * @param message error message answered by the server
+     */
+    public RejectedRequestException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Serves a museum holding a random catalog until the process is stopped
+   *
+   * @param args the port to listen on (7070 by default) and the size of the catalog (100000 by
+   *             default)
+   * @throws IOException if the port cannot be bound
+   */
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+    int catalogSize = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    ArtMuseum museum = new ArtMuseum();
+    for (Artwork artwork : ArtMuseumBenchmark.randomCatalog(catalogSize, new Random(42)))
+      museum.addArtwork(artwork);
+    ArtMuseumServer server = new ArtMuseumServer(museum, port);
+    System.out.println("serving " + museum.size() + " artworks on " + server.getAddress());
+  }
+}
@@ -1,5 +1,19 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.NoSuchElementException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
 
 /**
  * This class checks the correctness of the implementation of the methods defined in the class
@@ -71,6 +85,36 @@ public class ArtMuseumTester {
   }
 
 
+  /**
+   * Checks that Artwork.compareTo(), which compares precomputed sort keys, orders random artworks
+   * like a plain comparison of their years, costs and names. The names share long prefixes, are
+   * shorter than the packed prefix, or hold zero and high chars, so that every tie breaker is used.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testArtworkSortKey() {
+    String[] names = {"A", "Ab", "Ab\u0000", "Abc", "Abcd", "Abcde", "Abcdf", "abcd", "\u00e9t\u00e9",
+      "\uffff", "\uffff\uffff\uffff\uffffz", "Van Gogh", "Van Gogh 2", "Van Goghs"};
+    double[] costs = {0.1, 0.2, 0.30000000000000004, 0.3, 1, 100, 1e9, Double.MIN_VALUE,
+      Double.MAX_VALUE};
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      Artwork first = new Artwork(names[random.nextInt(names.length)], 1999 + random.nextInt(3),
+        costs[random.nextInt(costs.length)]);
+      Artwork second = new Artwork(names[random.nextInt(names.length)], 1999 + random.nextInt(3),
+        costs[random.nextInt(costs.length)]);
+      int expected = first.getYear() != second.getYear()
+        ? Integer.compare(first.getYear(), second.getYear())
+        : first.getCost() != second.getCost() ? Double.compare(first.getCost(), second.getCost())
+        : Integer.signum(first.getName().compareTo(second.getName()));
+      if (first.compareTo(second) != expected || second.compareTo(first) != -expected) {
+        System.out.println("compareTo() fails for " + first + " and " + second);
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Checks the correctness of the implementation of both addArtwork() and toString() methods
    * implemented in the ArtworkGallery class. This unit test considers at least the following
@@ -392,6 +436,1272 @@ public class ArtMuseumTester {
   }
 
 
+  /**
+   * Checks that ArtworkGallery.getBestArtwork() and ArtworkGallery.getOldestArtwork() stay correct
+   * while artworks are added and bought, including when the best or the oldest artwork is bought.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testBestAndOldestArtworkTracking() {
+    ArtMuseum gallery = new ArtMuseum();
+    if (gallery.getOldestArtwork() != null) {
+      System.out.println("getOldestArtwork() fails for empty gallery");
+      return false;
+    }
+    gallery.addArtwork(new Artwork("Starry Night, Van Gogh", 1889, 2000));
+    gallery.addArtwork(new Artwork("Mona Lisa, DaVinci", 1503, 3000));
+    gallery.addArtwork(new Artwork("Der Schrei, Edvard Munch", 1893, 4000));
+    gallery.addArtwork(new Artwork("The Persistence of Memory, Dali", 1931, 3000));
+    gallery.addArtwork(new Artwork("The Persistence of Memory, Dali", 1931, 3500));
+    if (gallery.getBestArtwork().getCost() != 3500 || gallery.getOldestArtwork().getYear() != 1503) {
+      System.out.println("best or oldest artwork is wrong after adding artworks");
+      return false;
+    }
+    // buy the best artwork, the next best must take its place
+    gallery.buyArtwork("The Persistence of Memory, Dali", 1931, 3500);
+    if (gallery.getBestArtwork().getCost() != 3000 || gallery.getBestArtwork().getYear() != 1931) {
+      System.out.println("getBestArtwork() fails after buying the best artwork");
+      return false;
+    }
+    // buy the oldest artwork
+    gallery.buyArtwork("Mona Lisa, DaVinci", 1503, 3000);
+    if (gallery.getOldestArtwork().getYear() != 1889) {
+      System.out.println("getOldestArtwork() fails after buying the oldest artwork");
+      return false;
+    }
+    // buy everything else
+    gallery.buyArtwork("Starry Night, Van Gogh", 1889, 2000);
+    gallery.buyArtwork("Der Schrei, Edvard Munch", 1893, 4000);
+    gallery.buyArtwork("The Persistence of Memory, Dali", 1931, 3000);
+    if (gallery.getBestArtwork() != null || gallery.getOldestArtwork() != null) {
+      System.out.println("best and oldest artwork must be null after buying all artworks");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of a self-adjusting ArtMuseum. The same artworks are added to a plain
+   * and to a self-adjusting museum, then both must agree on lookups, sizes, in-order contents, best
+   * artwork, and purchases, whatever the shape of their trees.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testSelfAdjustingMuseum() {
+    ArtMuseum plain = new ArtMuseum();
+    ArtMuseum splay = new ArtMuseum(true);
+    if (splay.lookup("Mona Lisa, DaVinci", 1503, 3000) || !splay.isSelfAdjusting()) {
+      System.out.println("lookup() fails for an empty self-adjusting gallery");
+      return false;
+    }
+    for (int i = 0; i < 50; i++) {
+      Artwork artwork = new Artwork("Artwork " + (i * 7 % 50), 1900 + i % 10, 1000 + i * 37 % 11);
+      if (plain.addArtwork(artwork) != splay.addArtwork(artwork)) {
+        System.out.println("addArtwork() fails in a self-adjusting gallery");
+        return false;
+      }
+    }
+    // sorted inserts degrade a plain BST but not the amortized cost of a splay tree
+    for (int i = 0; i < 50; i++) {
+      Artwork artwork = new Artwork("Sorted " + i, 2000 + i, 5000);
+      plain.addArtwork(artwork);
+      splay.addArtwork(artwork);
+    }
+    if (plain.size() != splay.size() || !plain.toString().equals(splay.toString())) {
+      System.out.println("self-adjusting gallery contents differ from the plain gallery");
+      return false;
+    }
+    // repeated lookups of a hot artwork
+    for (int i = 0; i < 3; i++) {
+      if (!splay.lookup("Sorted 0", 2000, 5000)) {
+        System.out.println("lookup() fails for a stored artwork in a self-adjusting gallery");
+        return false;
+      }
+    }
+    if (splay.lookup("Sorted 0", 2000, 5001) || splay.addArtwork(new Artwork("Sorted 3", 2003,
+      5000))) {
+      System.out.println("self-adjusting gallery found an artwork which is not stored");
+      return false;
+    }
+    plain.buyArtwork("Sorted 49", 2049, 5000);
+    splay.buyArtwork("Sorted 49", 2049, 5000);
+    plain.buyArtwork("Artwork 7", 1901, 1004);
+    splay.buyArtwork("Artwork 7", 1901, 1004);
+    if (plain.size() != splay.size() || !plain.toString().equals(splay.toString())
+      || splay.getBestArtwork().compareTo(plain.getBestArtwork()) != 0) {
+      System.out.println("buyArtwork() fails in a self-adjusting gallery");
+      return false;
+    }
+    try {
+      splay.buyArtwork("Sorted 49", 2049, 5000);
+      System.out.println("buyArtwork() must throw for a missing artwork in a self-adjusting gallery");
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+    return plain.toString().equals(splay.toString());
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.count() and ArtMuseum.totalValue() on plain and
+   * self-adjusting museums. Random artworks are added and bought, and after each step a few year
+   * ranges are checked against a brute force computation over the expected contents.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testCountAndTotalValue() {
+    ArtMuseum empty = new ArtMuseum();
+    if (empty.count(1000, 3000) != 0 || empty.totalValue(1000, 3000) != 0.0) {
+      System.out.println("count() or totalValue() fails for empty gallery");
+      return false;
+    }
+    for (boolean selfAdjusting : new boolean[] {false, true}) {
+      Random random = new Random(7);
+      ArtMuseum gallery = new ArtMuseum(selfAdjusting);
+      ArrayList<Artwork> expected = new ArrayList<Artwork>();
+      for (int step = 0; step < 400; step++) {
+        Artwork artwork = new Artwork("Artwork " + random.nextInt(40), 1900 + random.nextInt(30),
+          100 + random.nextInt(5));
+        boolean stored = gallery.lookup(artwork.getName(), artwork.getYear(), artwork.getCost());
+        if (stored && random.nextBoolean()) {
+          gallery.buyArtwork(artwork.getName(), artwork.getYear(), artwork.getCost());
+          for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i).compareTo(artwork) == 0)
+              expected.remove(i);
+          }
+        } else if (gallery.addArtwork(artwork)) {
+          expected.add(artwork);
+        }
+        int fromYear = 1895 + random.nextInt(40);
+        int toYear = fromYear + random.nextInt(10);
+        int expectedCount = 0;
+        double expectedValue = 0.0;
+        for (Artwork work : expected) {
+          if (work.getYear() >= fromYear && work.getYear() <= toYear) {
+            expectedCount++;
+            expectedValue += work.getCost();
+          }
+        }
+        if (gallery.count(fromYear, toYear) != expectedCount
+          || gallery.totalValue(fromYear, toYear) != expectedValue
+          || gallery.count(Integer.MIN_VALUE, Integer.MAX_VALUE) != expected.size()) {
+          System.out.println("count() or totalValue() fails for years " + fromYear + " to " + toYear);
+          return false;
+        }
+      }
+      if (gallery.count(1920, 1910) != 0) {
+        System.out.println("count() fails for an empty year range");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum lookups and purchases when the bloom filter is enabled.
+   * Stored artworks must always be found, missing artworks must never be found, and bought
+   * artworks must not be found anymore, including after the filter was rebuilt.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testBloomFilter() {
+    ArtMuseum gallery = new ArtMuseum();
+    gallery.enableBloomFilter(0.01, 0.25);
+    if (!gallery.isBloomFilterEnabled() || gallery.lookup("Mona Lisa, DaVinci", 1503, 3000)) {
+      System.out.println("lookup() fails for empty gallery with a bloom filter");
+      return false;
+    }
+    // add more artworks than the initial filter capacity to force a rebuild
+    for (int i = 0; i < 3000; i++)
+      gallery.addArtwork(new Artwork("Artwork " + i, 1000 + i % 1000, 100 + i));
+    for (int i = 0; i < 3000; i++) {
+      if (!gallery.lookup("Artwork " + i, 1000 + i % 1000, 100 + i)) {
+        System.out.println("lookup() misses a stored artwork with a bloom filter");
+        return false;
+      }
+      if (gallery.lookup("Artwork " + i, 1000 + i % 1000, 101 + i)) {
+        System.out.println("lookup() finds a missing artwork with a bloom filter");
+        return false;
+      }
+    }
+    // buy most artworks, which triggers rebuilds of the filter
+    for (int i = 0; i < 2500; i++)
+      gallery.buyArtwork("Artwork " + i, 1000 + i % 1000, 100 + i);
+    for (int i = 0; i < 3000; i++) {
+      if (gallery.lookup("Artwork " + i, 1000 + i % 1000, 100 + i) != (i >= 2500)) {
+        System.out.println("lookup() fails after buying artworks with a bloom filter");
+        return false;
+      }
+    }
+    try {
+      gallery.buyArtwork("Artwork 0", 1000, 100);
+      System.out.println("buyArtwork() must throw for a bought artwork with a bloom filter");
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+    gallery.disableBloomFilter();
+    return gallery.size() == 500 && gallery.lookup("Artwork 2999", 1999, 3099);
+  }
+
+  /**
+   * Checks the correctness of ShardedArtMuseum. (1) The same artworks are added to a sharded and
+   * to a plain museum, with a small shard size so that shards get split, and both must agree on
+   * contents, lookups, range queries and purchases. (2) Several threads add and buy artworks
+   * concurrently, and the final size must account for all of them. (3) A shard holding too many
+   * artworks of a single year, which cannot be split, must only be split again once its size
+   * doubled.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testShardedArtMuseum() {
+    ShardedArtMuseum sharded = new ShardedArtMuseum(10, 20, 1000);
+    ArtMuseum plain = new ArtMuseum();
+    if (sharded.size() != 0 || sharded.getBestArtwork() != null || sharded.count(0, 3000) != 0) {
+      System.out.println("sharded gallery fails when empty");
+      return false;
+    }
+    Random random = new Random(11);
+    for (int i = 0; i < 500; i++) {
+      Artwork artwork = new Artwork("Artwork " + random.nextInt(100), 1900 + random.nextInt(60),
+        100 + random.nextInt(10));
+      if (sharded.addArtwork(artwork) != plain.addArtwork(artwork)) {
+        System.out.println("addArtwork() fails in a sharded gallery");
+        return false;
+      }
+    }
+    if (sharded.shardCount() <= 6 || sharded.size() != plain.size()
+      || !sharded.toString().equals(plain.toString())) {
+      System.out.println("sharded gallery contents differ from the plain gallery");
+      return false;
+    }
+    for (int i = 0; i < 2000; i++) {
+      Artwork artwork = new Artwork("Artwork " + random.nextInt(100), 1900 + random.nextInt(60),
+        100 + random.nextInt(10));
+      if (sharded.lookup(artwork.getName(), artwork.getYear(), artwork.getCost())
+        != plain.lookup(artwork.getName(), artwork.getYear(), artwork.getCost())
+        || sharded.lookupAll(artwork.getYear(), 105).size()
+        != plain.lookupAll(artwork.getYear(), 105).size()) {
+        System.out.println("lookup() fails in a sharded gallery");
+        return false;
+      }
+      int fromYear = 1890 + random.nextInt(80);
+      int toYear = fromYear + random.nextInt(30);
+      if (sharded.count(fromYear, toYear) != plain.count(fromYear, toYear)
+        || sharded.totalValue(fromYear, toYear) != plain.totalValue(fromYear, toYear)) {
+        System.out.println("count() or totalValue() fails in a sharded gallery");
+        return false;
+      }
+    }
+    Artwork best = plain.getBestArtwork();
+    sharded.buyArtwork(best.getName(), best.getYear(), best.getCost());
+    plain.buyArtwork(best.getName(), best.getYear(), best.getCost());
+    if (sharded.getBestArtwork().compareTo(plain.getBestArtwork()) != 0) {
+      System.out.println("getBestArtwork() fails in a sharded gallery");
+      return false;
+    }
+    try {
+      sharded.buyArtwork("Nobody", 2500, 100);
+      System.out.println("buyArtwork() must throw for a missing artwork in a sharded gallery");
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+
+    // (2) concurrent adds and purchases on disjoint artworks
+    ShardedArtMuseum concurrent = new ShardedArtMuseum(5, 50, 500);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int thread = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++)
+          concurrent.addArtwork(new Artwork("Thread " + thread + " " + i, 1900 + i % 100, 100));
+        for (int i = 0; i < 1000; i += 2)
+          concurrent.buyArtwork("Thread " + thread + " " + i, 1900 + i % 100, 100);
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads)
+        thread.join();
+    } catch (InterruptedException e) {
+      return false;
+    }
+    if (concurrent.size() != 2000 || concurrent.count(1900, 1999) != 2000) {
+      System.out.println("concurrent adds and purchases fail in a sharded gallery");
+      return false;
+    }
+
+    // (3) a shard too large but holding a single year cannot be split, and must not be rescanned
+    // on every access: its split size doubles from 20 to 42, 86 and 174
+    ShardedArtMuseum singleYear = new ShardedArtMuseum(10, 20, Long.MAX_VALUE);
+    for (int i = 0; i < 100; i++)
+      singleYear.addArtwork(new Artwork("Artwork " + i, 1950, 100 + i));
+    if (singleYear.size() != 100 || singleYear.shardCount() != 1) {
+      System.out.println("a sharded gallery fails to hold a single year in one shard");
+      return false;
+    }
+    // the shard could now be split at 1951, but not before it holds more than 174 artworks
+    for (int i = 0; i < 74; i++)
+      singleYear.addArtwork(new Artwork("Artwork " + i, 1951, 100 + i));
+    if (singleYear.size() != 174 || singleYear.shardCount() != 1) {
+      System.out.println("a sharded gallery holding a single year rescans its shard");
+      return false;
+    }
+    singleYear.addArtwork(new Artwork("Artwork 74", 1951, 174));
+    if (singleYear.size() != 175 || singleYear.shardCount() != 2
+      || singleYear.count(1950, 1950) != 100 || singleYear.count(1951, 1951) != 75) {
+      System.out.println("a sharded gallery fails to split a shard once its size doubled");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.purchaseArtwork(). (1) Purchasing an artwork which has two
+   * children returns the stored artwork and keeps the tree sorted. (2) A failed purchase throws a
+   * NoSuchElementException and leaves the size unchanged. (3) Random purchases keep the contents
+   * and the subtree aggregates consistent with the expected contents.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testPurchaseArtwork() {
+    // (1) the root has two children and its successor is deep in the right subtree
+    ArtMuseum gallery = new ArtMuseum();
+    Artwork root = new Artwork("Gothic, Wood", 1930, 6000.0);
+    gallery.addArtwork(root);
+    gallery.addArtwork(new Artwork("Mona Lisa, Davinci", 1503, 1000.0));
+    gallery.addArtwork(new Artwork("Der Schrei, Silber", 2019, 12160.0));
+    gallery.addArtwork(new Artwork("Guernica, Picasso", 1937, 3000.0));
+    gallery.addArtwork(new Artwork("Whistler, Abbott", 1931, 5000.0));
+    gallery.addArtwork(new Artwork("Nighthawks, Hopper", 1942, 5000.0));
+    if (gallery.purchaseArtwork("Gothic, Wood", 1930, 6000.0) != root) {
+      System.out.println("purchaseArtwork() fails to return the stored artwork");
+      return false;
+    }
+    String expected = "[(Name: Mona Lisa, Davinci) (Year: 1503) (Cost: $1000.0)]\n"
+      + "[(Name: Whistler, Abbott) (Year: 1931) (Cost: $5000.0)]\n"
+      + "[(Name: Guernica, Picasso) (Year: 1937) (Cost: $3000.0)]\n"
+      + "[(Name: Nighthawks, Hopper) (Year: 1942) (Cost: $5000.0)]\n"
+      + "[(Name: Der Schrei, Silber) (Year: 2019) (Cost: $12160.0)]\n";
+    if (!gallery.toString().equals(expected) || gallery.size() != 5
+      || gallery.count(1000, 3000) != 5) {
+      System.out.println("purchaseArtwork() fails when buying an artwork with two children");
+      return false;
+    }
+
+    // (2) failed purchase
+    try {
+      gallery.purchaseArtwork("Gothic, Wood", 1930, 6000.0);
+      System.out.println("purchaseArtwork() must throw for a missing artwork");
+      return false;
+    } catch (NoSuchElementException e) {
+      if (gallery.size() != 5 || gallery.count(1000, 3000) != 5) {
+        System.out.println("a failed purchaseArtwork() changes the size of the gallery");
+        return false;
+      }
+    }
+
+    // (3) random purchases
+    Random random = new Random(3);
+    ArtMuseum randomGallery = new ArtMuseum();
+    ArrayList<Artwork> stored = new ArrayList<Artwork>();
+    for (int i = 0; i < 300; i++) {
+      Artwork artwork = new Artwork("Artwork " + i, 1900 + random.nextInt(50), 100 + i);
+      randomGallery.addArtwork(artwork);
+      stored.add(artwork);
+    }
+    while (!stored.isEmpty()) {
+      Artwork artwork = stored.remove(random.nextInt(stored.size()));
+      if (randomGallery.purchaseArtwork(artwork.getName(), artwork.getYear(), artwork.getCost())
+        != artwork) {
+        System.out.println("purchaseArtwork() fails to return the stored artwork");
+        return false;
+      }
+      double expectedValue = 0.0;
+      for (Artwork work : stored)
+        expectedValue += work.getCost();
+      if (randomGallery.size() != stored.size()
+        || randomGallery.count(1000, 3000) != stored.size()
+        || randomGallery.totalValue(1000, 3000) != expectedValue) {
+        System.out.println("purchaseArtwork() fails to keep the subtree aggregates consistent");
+        return false;
+      }
+    }
+    return randomGallery.isEmpty() && randomGallery.getBestArtwork() == null;
+  }
+
+  /**
+   * Checks the change feed of ArtMuseum. A replica subscribes to a museum with batches of 4
+   * events and applies them as incremental deltas. Batches must be full until flushed, sequence
+   * numbers must be consecutive, and the replica must match the museum once flushed. Once
+   * cancelled, a subscription must not receive any more events. A listener which throws must only
+   * cancel its own subscription, without failing the change or the other subscriptions.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testCatalogSubscription() {
+    ArtMuseum gallery = new ArtMuseum();
+    gallery.addArtwork(new Artwork("Before, Subscribing", 1900, 100));
+    ArtMuseum replica = new ArtMuseum();
+    replica.addArtwork(new Artwork("Before, Subscribing", 1900, 100));
+    ArrayList<Integer> batchSizes = new ArrayList<Integer>();
+    long[] expectedSequence = {gallery.getLastSequence() + 1};
+    boolean[] ordered = {true};
+    CatalogSubscription subscription = gallery.subscribe(events -> {
+      batchSizes.add(events.size());
+      for (CatalogEvent event : events) {
+        if (event.getSequence() != expectedSequence[0]++)
+          ordered[0] = false;
+        Artwork artwork = event.getArtwork();
+        if (event.getType() == CatalogEvent.Type.ADD)
+          replica.addArtwork(artwork);
+        else
+          replica.buyArtwork(artwork.getName(), artwork.getYear(), artwork.getCost());
+      }
+    }, 4);
+    for (int i = 0; i < 10; i++)
+      gallery.addArtwork(new Artwork("Artwork " + i, 1950 + i, 1000));
+    gallery.addArtwork(new Artwork("Artwork 0", 1950, 1000)); // duplicate, no event
+    gallery.buyArtwork("Artwork 3", 1953, 1000);
+    try {
+      gallery.buyArtwork("Artwork 3", 1953, 1000); // failed purchase, no event
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+    if (batchSizes.size() != 2 || batchSizes.get(0) != 4 || batchSizes.get(1) != 4) {
+      System.out.println("change feed fails to deliver full batches");
+      return false;
+    }
+    gallery.flushEvents();
+    if (batchSizes.size() != 3 || batchSizes.get(2) != 3 || !ordered[0]
+      || subscription.getLastDeliveredSequence() != gallery.getLastSequence()
+      || !replica.toString().equals(gallery.toString())) {
+      System.out.println("change feed replica differs from the gallery after flushing");
+      return false;
+    }
+    gallery.unsubscribe(subscription);
+    for (int i = 0; i < 10; i++)
+      gallery.addArtwork(new Artwork("After, Cancelling " + i, 2000, 1000));
+    gallery.flushEvents();
+    if (batchSizes.size() != 3 || !subscription.isCancelled()) {
+      System.out.println("change feed delivers events after cancelling");
+      return false;
+    }
+
+    // a failing listener subscribed before a working one
+    IllegalStateException thrown = new IllegalStateException("listener failure");
+    CatalogSubscription failing = gallery.subscribe(events -> {
+      throw thrown;
+    }, 1);
+    ArrayList<CatalogEvent> received = new ArrayList<CatalogEvent>();
+    CatalogSubscription working = gallery.subscribe(received::addAll, 1);
+    int size = gallery.size();
+    try {
+      if (!gallery.addArtwork(new Artwork("Despite, Failure", 2010, 500))
+        || !gallery.lookup("Despite, Failure", 2010, 500) || gallery.size() != size + 1) {
+        System.out.println("a failing listener prevents addArtwork()");
+        return false;
+      }
+      gallery.buyArtwork("Despite, Failure", 2010, 500);
+    } catch (RuntimeException e) {
+      System.out.println("a listener exception escapes from the gallery: " + e);
+      return false;
+    }
+    if (gallery.lookup("Despite, Failure", 2010, 500) || gallery.size() != size
+      || !failing.isCancelled() || failing.getFailure() != thrown || received.size() != 2
+      || working.isCancelled() || working.getFailure() != null) {
+      System.out.println("a failing listener is not isolated from the other subscriptions");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtworkCsvImporter and ArtMuseum.fromSortedArtworks(). A CSV file
+   * with a header, quoted and unquoted names containing commas, invalid rows, a duplicate row and
+   * a line longer than the chunk size is imported with tiny chunks. The valid rows must be in the
+   * museum, which must be balanced, and every invalid row must be reported with its line number.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testCsvImport() {
+    try {
+      ArtMuseum.fromSortedArtworks(List.of(new Artwork("B", 2000, 10),
+        new Artwork("A", 1990, 10)));
+      System.out.println("fromSortedArtworks() must reject unsorted artworks");
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    String longName = "Long " + "x".repeat(200);
+    String csv = "name,year,cost\n"
+      + "Gothic, Wood,1932,7000.0\n"
+      + "\"Last Dinner, \"\"DaVinci\"\"\",1503,1000\r\n"
+      + "Too Old,999,100\n"
+      + "\n"
+      + "Free,1950,0\n"
+      + "Der Schrei, Silber,2019,12160.0\n"
+      + "Bad Year,19x0,100\n"
+      + longName + ",1900,50\n"
+      + "Gothic, Wood,1932,7000.0\n"
+      + ",1960,10\n"
+      + "Missing Fields\n"
+      + "Whistler, Abbott,1871,5000\n"
+      + "Unpriced,1960,NaN\n"
+      + "Priceless,1961,-Infinity\n"
+      + "Beyond Price,1962,Infinity";
+    Path file = null;
+    try {
+      file = Files.createTempFile("artworks", ".csv");
+      Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+      ArtworkCsvImporter.Result result = new ArtworkCsvImporter(32, 3).importCatalog(file);
+      ArtMuseum museum = result.getMuseum();
+      String expected = "[(Name: Last Dinner, \"DaVinci\") (Year: 1503) (Cost: $1000.0)]\n"
+        + "[(Name: Whistler, Abbott) (Year: 1871) (Cost: $5000.0)]\n"
+        + "[(Name: " + longName + ") (Year: 1900) (Cost: $50.0)]\n"
+        + "[(Name: Gothic, Wood) (Year: 1932) (Cost: $7000.0)]\n"
+        + "[(Name: Der Schrei, Silber) (Year: 2019) (Cost: $12160.0)]\n";
+      if (!museum.toString().equals(expected) || museum.size() != 5 || museum.height() != 3
+        || museum.getBestArtwork().getYear() != 2019 || result.getDuplicateCount() != 1) {
+        System.out.println("importCatalog() fails to import the valid rows");
+        return false;
+      }
+      long[] expectedLines = {4, 6, 8, 11, 12, 14, 15, 16};
+      if (result.getErrors().size() != expectedLines.length) {
+        System.out.println("importCatalog() fails to report the invalid rows");
+        return false;
+      }
+      for (int i = 0; i < expectedLines.length; i++) {
+        if (result.getErrors().get(i).getLine() != expectedLines[i]) {
+          System.out.println("importCatalog() reports a wrong line: " + result.getErrors().get(i));
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("importCatalog() fails with " + e);
+      return false;
+    } finally {
+      try {
+        if (file != null)
+          Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // ignore, the file is in the temporary directory
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtworkExporter with a buffer smaller than some of the names. (1) The
+   * text export of a museum must be the same as its toString(), both to a FileChannel and to a
+   * stream channel. (2) The binary export must be read back into an identical museum, and a
+   * truncated binary export must be rejected. (3) A forged number of artworks or name length must
+   * be rejected without allocating for it, both from a stream channel and from a FileChannel.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testExport() {
+    ArtMuseum museum = new ArtMuseum();
+    museum.addArtwork(new Artwork("Gothic, Wood", 1932, 7000.0));
+    museum.addArtwork(new Artwork("Die Sternennacht, Gogh \u00e9\u00e8", 1889, 3000.5));
+    museum.addArtwork(new Artwork("Long " + "\u00e9".repeat(40), 1500, 100));
+    museum.addArtwork(new Artwork("Der Schrei, Silber", 2019, 12160.0));
+    ArtworkExporter exporter = new ArtworkExporter(16);
+    Path file = null;
+    try {
+      // (1) text export
+      ByteArrayOutputStream text = new ByteArrayOutputStream();
+      long written = exporter.exportText(museum, Channels.newChannel(text));
+      String expected = museum.toString();
+      if (!text.toString(StandardCharsets.UTF_8).equals(expected) || written != text.size()) {
+        System.out.println("exportText() fails to write the same text as toString()");
+        return false;
+      }
+      file = Files.createTempFile("artworks", ".txt");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        exporter.exportText(museum, channel);
+      }
+      if (!Files.readString(file, StandardCharsets.UTF_8).equals(expected)) {
+        System.out.println("exportText() fails to write to a FileChannel");
+        return false;
+      }
+      // (2) binary export
+      ByteArrayOutputStream binary = new ByteArrayOutputStream();
+      exporter.exportBinary(museum, Channels.newChannel(binary));
+      byte[] bytes = binary.toByteArray();
+      ArtMuseum copy = exporter.importBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+      if (!copy.toString().equals(expected) || copy.size() != museum.size()
+        || exporter.importBinary(Channels.newChannel(new ByteArrayInputStream(
+        new byte[] {0x41, 0x52, 0x54, 0x4D, 0, 0, 0, 0}))).size() != 0) {
+        System.out.println("importBinary() fails to read back a binary export");
+        return false;
+      }
+      try {
+        exporter.importBinary(Channels.newChannel(new ByteArrayInputStream(bytes, 0,
+          bytes.length - 3)));
+        System.out.println("importBinary() must reject a truncated export");
+        return false;
+      } catch (IOException e) {
+        // expected
+      }
+      // (3) forged count and name length, each big enough to run out of memory if trusted
+      byte[] forgedCount = bytes.clone();
+      forgedCount[4] = 0x7F;
+      byte[] forgedLength = bytes.clone();
+      forgedLength[8] = 0x7F;
+      for (byte[] forged : new byte[][] {forgedCount, forgedLength}) {
+        Files.write(file, forged);
+        for (int source = 0; source < 2; source++) {
+          try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            exporter.importBinary(source == 0 ? channel
+              : Channels.newChannel(new ByteArrayInputStream(forged)));
+            System.out.println("importBinary() must reject a forged export");
+            return false;
+          } catch (IOException e) {
+            // expected
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("export fails with " + e);
+      return false;
+    } finally {
+      try {
+        if (file != null)
+          Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // ignore, the file is in the temporary directory
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.merge() and ArtMuseum.splitAtYear(). (1) Merging two
+   * overlapping museums must add only the missing artworks, keep the other museum unchanged,
+   * publish one event per added artwork, and leave a balanced tree. (2) Splitting a museum must
+   * partition its artworks by year and leave it unchanged.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testMergeAndSplit() {
+    ArtMuseum east = new ArtMuseum();
+    ArtMuseum west = new ArtMuseum();
+    ArtMuseum expected = new ArtMuseum();
+    for (int i = 0; i < 100; i++) {
+      Artwork artwork = new Artwork("Artwork " + i, 1900 + i, 1000 + i);
+      if (i % 2 == 0 || i % 3 == 0)
+        east.addArtwork(artwork); // sorted inserts, east is degenerate
+      if (i % 2 == 1 || i % 3 == 0)
+        west.addArtwork(artwork);
+      expected.addArtwork(artwork);
+    }
+    String westBefore = west.toString();
+    int[] events = {0};
+    east.subscribe(batch -> events[0] += batch.size(), 1);
+    int eastSize = east.size();
+    int added = east.merge(west);
+    if (added != 100 - eastSize || events[0] != added || east.size() != 100
+      || !east.toString().equals(expected.toString()) || !west.toString().equals(westBefore)) {
+      System.out.println("merge() fails to merge two overlapping galleries");
+      return false;
+    }
+    if (east.height() != 7 || east.count(1900, 1949) != 50
+      || east.getBestArtwork().getYear() != 1999
+      || east.getOldestArtwork().getYear() != 1900 || !east.lookup("Artwork 1", 1901, 1001)) {
+      System.out.println("merge() fails to rebuild a balanced tree");
+      return false;
+    }
+    if (east.merge(west) != 0 || east.merge(east) != 0 || east.size() != 100) {
+      System.out.println("merge() adds artworks which are already stored");
+      return false;
+    }
+
+    // (2) split
+    ArtMuseum[] halves = east.splitAtYear(1930);
+    if (halves[0].size() != 30 || halves[1].size() != 70 || east.size() != 100
+      || halves[0].getBestArtwork().getYear() != 1929
+      || halves[1].getOldestArtwork().getYear() != 1930
+      || !(halves[0].toString() + halves[1].toString()).equals(expected.toString())) {
+      System.out.println("splitAtYear() fails to split a gallery");
+      return false;
+    }
+    halves = east.splitAtYear(1800);
+    if (!halves[0].isEmpty() || halves[1].size() != 100) {
+      System.out.println("splitAtYear() fails to split before the oldest artwork");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.rebalance() and of the automatic rebalancing. (1) A
+   * degenerate tree built from sorted inserts must have the smallest possible height once
+   * rebalanced, with the same contents and range counts. (2) With automatic rebalancing, sorted
+   * inserts must never let the height exceed the configured bound. (3) The same holds for long
+   * runs of increasing and decreasing inserts, which rebalance subtrees on both sides.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testRebalance() {
+    ArtMuseum gallery = new ArtMuseum();
+    gallery.rebalance();
+    if (gallery.height() != 0) {
+      System.out.println("rebalance() fails on an empty gallery");
+      return false;
+    }
+    for (int i = 0; i < 200; i++)
+      gallery.addArtwork(new Artwork("Artwork " + i, 1800 + i, 1000));
+    String before = gallery.toString();
+    if (gallery.height() != 200) {
+      System.out.println("sorted inserts must degenerate a plain gallery");
+      return false;
+    }
+    gallery.rebalance();
+    if (gallery.height() != 8 || !gallery.toString().equals(before) || gallery.size() != 200
+      || gallery.count(1850, 1899) != 50 || gallery.totalValue(1800, 1809) != 10000.0
+      || !gallery.lookup("Artwork 0", 1800, 1000)) {
+      System.out.println("rebalance() fails on a degenerate gallery");
+      return false;
+    }
+    // a complete tree of 255 nodes
+    for (int i = 200; i < 255; i++)
+      gallery.addArtwork(new Artwork("Artwork " + i, 1800 + i, 1000));
+    gallery.rebalance();
+    if (gallery.height() != 8) {
+      System.out.println("rebalance() fails to build a complete tree");
+      return false;
+    }
+
+    // (2) automatic rebalancing
+    ArtMuseum auto = new ArtMuseum();
+    auto.setAutoRebalanceFactor(2.0);
+    for (int i = 1; i <= 1000; i++) {
+      auto.addArtwork(new Artwork("Artwork " + i, 1000 + i, 1000));
+      if (auto.height() > 2.0 * Math.log(i + 1) / Math.log(2)) {
+        System.out.println("automatic rebalancing fails to bound the height");
+        return false;
+      }
+    }
+    if (auto.size() != 1000 || auto.count(1000, 3000) != 1000
+      || auto.getBestArtwork().getYear() != 2000) {
+      System.out.println("automatic rebalancing fails to keep the contents");
+      return false;
+    }
+
+    // (3) long runs of increasing and decreasing adds rebalance subtrees on both sides of the tree
+    for (int direction : new int[] {1, -1}) {
+      ArtMuseum sorted = new ArtMuseum();
+      sorted.setAutoRebalanceFactor(1.5);
+      for (int i = 1; i <= 50_000; i++) {
+        sorted.addArtwork(new Artwork("Artwork " + i, 2000, 100_000 + direction * i));
+        if (i % 1000 == 0 && sorted.height() > 1.5 * Math.log(i + 1) / Math.log(2)) {
+          System.out.println("automatic rebalancing fails to bound the height of sorted adds");
+          return false;
+        }
+      }
+      if (sorted.size() != 50_000 || sorted.count(2000, 2000) != 50_000
+        || sorted.totalValue(2000, 2000) != 50_000 * 100_000.0 + direction * 25_000 * 50_001.0
+        || !sorted.lookup("Artwork 1", 2000, 100_000 + direction)) {
+        System.out.println("automatic rebalancing fails to keep the contents of sorted adds");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.page(). Paging through a museum with a limit of 7 must
+   * return all the artworks in order exactly once, with a next cursor on every page but the last,
+   * and a page must resume correctly after its cursor was bought.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testPage() {
+    ArtMuseum gallery = new ArtMuseum();
+    ArtworkPage empty = gallery.page(null, 10);
+    if (!empty.getArtworks().isEmpty() || empty.hasNext()) {
+      System.out.println("page() fails on an empty gallery");
+      return false;
+    }
+    Random random = new Random(5);
+    for (int i = 0; i < 50; i++)
+      gallery.addArtwork(new Artwork("Artwork " + i, 1900 + random.nextInt(20), 100 + i % 3));
+    StringBuilder paged = new StringBuilder();
+    int pages = 0;
+    Artwork cursor = null;
+    do {
+      ArtworkPage page = gallery.page(cursor, 7);
+      pages++;
+      for (Artwork artwork : page.getArtworks())
+        paged.append(artwork).append("\n");
+      if (page.hasNext() && page.getArtworks().size() != 7) {
+        System.out.println("page() returns a short page before the end");
+        return false;
+      }
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+    if (pages != 8 || !paged.toString().equals(gallery.toString())) {
+      System.out.println("page() fails to page through the whole gallery");
+      return false;
+    }
+    // resume after a cursor which was bought in the meantime
+    ArtworkPage first = gallery.page(null, 10);
+    Artwork bought = first.getNextCursor();
+    gallery.buyArtwork(bought.getName(), bought.getYear(), bought.getCost());
+    ArtworkPage second = gallery.page(bought, 10);
+    ArtworkPage expected = gallery.page(first.getArtworks().get(8), 10);
+    if (!second.getArtworks().equals(expected.getArtworks())) {
+      System.out.println("page() fails to resume after a bought cursor");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.floor(), lower(), ceiling(), higher() and
+   * bestUnderBudget() against a brute force search over the sorted artworks of a random museum,
+   * for stored and missing artworks. bestUnderBudget() must reject a NaN or infinite budget.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testNavigation() {
+    ArtMuseum gallery = new ArtMuseum();
+    Artwork probe = new Artwork("Probe", 1950, 100);
+    if (gallery.floor(probe) != null || gallery.higher(probe) != null
+      || gallery.bestUnderBudget(1950, 1000) != null) {
+      System.out.println("navigation fails on an empty gallery");
+      return false;
+    }
+    Random random = new Random(9);
+    ArrayList<Artwork> sorted = new ArrayList<Artwork>();
+    for (int i = 0; i < 200; i++) {
+      Artwork artwork = new Artwork("Artwork " + random.nextInt(10), 1940 + random.nextInt(20),
+        100 * (1 + random.nextInt(10)));
+      if (gallery.addArtwork(artwork))
+        sorted.add(artwork);
+    }
+    sorted.sort(null);
+    for (int i = 0; i < 500; i++) {
+      Artwork target = new Artwork("Artwork " + random.nextInt(10), 1938 + random.nextInt(24),
+        100 * (1 + random.nextInt(10)));
+      Artwork floor = null;
+      Artwork lower = null;
+      Artwork ceiling = null;
+      Artwork higher = null;
+      for (Artwork artwork : sorted) {
+        int comparison = artwork.compareTo(target);
+        if (comparison <= 0)
+          floor = artwork;
+        if (comparison < 0)
+          lower = artwork;
+        if (comparison >= 0 && ceiling == null)
+          ceiling = artwork;
+        if (comparison > 0 && higher == null)
+          higher = artwork;
+      }
+      if (gallery.floor(target) != floor || gallery.lower(target) != lower
+        || gallery.ceiling(target) != ceiling || gallery.higher(target) != higher) {
+        System.out.println("navigation fails for " + target);
+        return false;
+      }
+      double budget = 50 + random.nextInt(1000);
+      Artwork best = null;
+      for (Artwork artwork : sorted) {
+        if (artwork.getYear() == target.getYear() && artwork.getCost() <= budget)
+          best = artwork;
+      }
+      if (gallery.bestUnderBudget(target.getYear(), budget) != best) {
+        System.out.println("bestUnderBudget() fails for " + target.getYear() + " and " + budget);
+        return false;
+      }
+    }
+    for (double budget : new double[] {Double.NaN, Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY}) {
+      try {
+        gallery.bestUnderBudget(sorted.get(0).getYear(), budget);
+        System.out.println("bestUnderBudget() must reject a budget of " + budget);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected behavior
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of the year histogram of ArtMuseum. Random artworks, including some in
+   * very late years, are added, bought, merged and bulk loaded, and the per-year and per-decade
+   * counts and values must match the ones computed from the tree.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testYearHistogram() {
+    ArtMuseum gallery = new ArtMuseum();
+    YearHistogram histogram = gallery.getYearHistogram();
+    if (histogram.count(1950) != 0 || histogram.count(1000, 3000) != 0
+      || histogram.value(Integer.MIN_VALUE, Integer.MAX_VALUE) != 0.0) {
+      System.out.println("year histogram fails on an empty gallery");
+      return false;
+    }
+    Random random = new Random(13);
+    ArrayList<Artwork> stored = new ArrayList<Artwork>();
+    for (int i = 0; i < 500; i++) {
+      int year = i % 50 == 0 ? 100_000 + random.nextInt(3) : 1000 + random.nextInt(1100);
+      Artwork artwork = new Artwork("Artwork " + i, year, 1 + random.nextInt(100));
+      gallery.addArtwork(artwork);
+      stored.add(artwork);
+    }
+    for (int i = 0; i < 200; i++) {
+      Artwork artwork = stored.remove(random.nextInt(stored.size()));
+      gallery.buyArtwork(artwork.getName(), artwork.getYear(), artwork.getCost());
+    }
+    ArtMuseum other = new ArtMuseum();
+    for (int i = 0; i < 50; i++)
+      other.addArtwork(new Artwork("Other " + i, 1900 + i, 10));
+    gallery.merge(other);
+    ArtMuseum bulk = ArtMuseum.fromSortedArtworks(List.of(new Artwork("A", 1950, 5),
+      new Artwork("B", 1960, 7), new Artwork("C", 200_000, 9)));
+    for (ArtMuseum museum : new ArtMuseum[] {gallery, bulk}) {
+      histogram = museum.getYearHistogram();
+      for (int decade = 990; decade < 2200; decade += 10) {
+        if (histogram.count(decade, decade + 9) != museum.count(decade, decade + 9)
+          || histogram.value(decade, decade + 9) != museum.totalValue(decade, decade + 9)
+          || histogram.count(decade + 5) != museum.count(decade + 5, decade + 5)) {
+          System.out.println("year histogram fails for the decade " + decade);
+          return false;
+        }
+      }
+      if (histogram.count(Integer.MIN_VALUE, Integer.MAX_VALUE) != museum.size()
+        || histogram.count(100_000, 300_000) != museum.count(100_000, 300_000)
+        || histogram.value(100_001) != museum.totalValue(100_001, 100_001)) {
+        System.out.println("year histogram fails for late years");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseum.query() and explain(). Compound queries over a large
+   * random museum must return the same artworks as a brute force filter, in increasing order,
+   * whatever the plan. A narrow year range must be planned as a year range scan, and a query
+   * without year range as a full scan.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testQuery() {
+    ArtMuseum gallery = new ArtMuseum();
+    Random random = new Random(17);
+    ArrayList<Artwork> sorted = new ArrayList<Artwork>();
+    for (int i = 0; i < 100_000; i++) {
+      Artwork artwork = new Artwork((i % 7 == 0 ? "Van Gogh " : "Artist ") + i,
+        1000 + random.nextInt(1000), 1 + random.nextInt(10_000));
+      if (gallery.addArtwork(artwork))
+        sorted.add(artwork);
+    }
+    sorted.sort(null);
+    ArtworkQuery[] queries = {
+      new ArtworkQuery().yearBetween(1880, 1890).costBetween(0, 5000).nameContains("Van Gogh"),
+      new ArtworkQuery().costBetween(100, 200),
+      new ArtworkQuery().nameContains("Van Gogh 7"),
+      new ArtworkQuery().yearBetween(1000, 1999).nameContains("99"),
+      new ArtworkQuery().yearBetween(3000, 2000)};
+    for (ArtworkQuery query : queries) {
+      ArrayList<Artwork> expected = new ArrayList<Artwork>();
+      for (Artwork artwork : sorted) {
+        if (query.matches(artwork))
+          expected.add(artwork);
+      }
+      QueryResult result = gallery.query(query);
+      if (!result.getArtworks().equals(expected)) {
+        System.out.println("query() fails for " + query + " with " + result.getPlan());
+        return false;
+      }
+    }
+    QueryPlan narrow = gallery.explain(queries[0]);
+    if (narrow.getAccessPath() != QueryPlan.AccessPath.YEAR_RANGE_SCAN
+      || narrow.getEstimatedRows() != gallery.count(1880, 1890)) {
+      System.out.println("explain() fails to plan a year range scan: " + narrow);
+      return false;
+    }
+    if (gallery.explain(queries[1]).getAccessPath() == QueryPlan.AccessPath.YEAR_RANGE_SCAN) {
+      System.out.println("explain() plans a year range scan without a year range");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of the lazy purchases of ArtMuseum. Random artworks are added, bought
+   * and re-added, and after every operation the museum must hold exactly the artworks of a sorted
+   * reference list: lookups, traversal, range aggregates, navigation and extremes must all skip
+   * the tombstones. The tombstones must stay below the compaction ratio, and compact() must
+   * remove them all without changing the contents of the museum.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testLazyPurchases() {
+    try {
+      new ArtMuseum(true).enableLazyPurchases(0.5);
+      System.out.println("enableLazyPurchases() accepts a self-adjusting museum");
+      return false;
+    } catch (IllegalStateException e) {
+      // expected behavior
+    }
+    ArtMuseum gallery = new ArtMuseum();
+    gallery.enableLazyPurchases(0.5);
+    Random random = new Random(41);
+    ArrayList<Artwork> sorted = new ArrayList<Artwork>();
+    for (int i = 0; i < 3000; i++) {
+      Artwork artwork = new Artwork("Artwork " + random.nextInt(8), 1950 + random.nextInt(10),
+        100 * (1 + random.nextInt(5)));
+      int index = Collections.binarySearch(sorted, artwork);
+      if (random.nextInt(3) == 0) {
+        try {
+          gallery.buyArtwork(artwork.getName(), artwork.getYear(), artwork.getCost());
+          if (index < 0) {
+            System.out.println("buyArtwork() buys a missing or sold artwork " + artwork);
+            return false;
+          }
+          sorted.remove(index);
+        } catch (NoSuchElementException e) {
+          if (index >= 0) {
+            System.out.println("buyArtwork() fails to buy " + artwork);
+            return false;
+          }
+        }
+      } else if (gallery.addArtwork(artwork) != index < 0) {
+        System.out.println("addArtwork() fails for " + artwork);
+        return false;
+      } else if (index < 0)
+        sorted.add(-index - 1, artwork);
+      if (gallery.getTombstoneCount() > 0.5 * (gallery.size() + gallery.getTombstoneCount())) {
+        System.out.println("lazy purchases are not compacted: " + gallery.getTombstoneCount());
+        return false;
+      }
+      Artwork probe = new Artwork("Artwork " + random.nextInt(8), 1950 + random.nextInt(10),
+        100 * (1 + random.nextInt(5)));
+      int probeIndex = Collections.binarySearch(sorted, probe);
+      Artwork floor = probeIndex >= 0 ? sorted.get(probeIndex)
+        : -probeIndex - 2 >= 0 ? sorted.get(-probeIndex - 2) : null;
+      Artwork higher = probeIndex >= 0 ? (probeIndex + 1 < sorted.size()
+        ? sorted.get(probeIndex + 1) : null)
+        : -probeIndex - 1 < sorted.size() ? sorted.get(-probeIndex - 1) : null;
+      if (gallery.size() != sorted.size()
+        || gallery.lookup(probe.getName(), probe.getYear(), probe.getCost()) != probeIndex >= 0
+        || !Objects.equals(gallery.floor(probe), floor)
+        || !Objects.equals(gallery.higher(probe), higher)
+        || gallery.count(1952, 1956) != gallery.getYearHistogram().count(1952, 1956)
+        || !Objects.equals(gallery.getBestArtwork(),
+          sorted.isEmpty() ? null : sorted.get(sorted.size() - 1))
+        || !Objects.equals(gallery.getOldestArtwork(), sorted.isEmpty() ? null : sorted.get(0))) {
+        System.out.println("lazy purchases fail after " + i + " operations, probe " + probe);
+        return false;
+      }
+    }
+    ArrayList<Artwork> iterated = new ArrayList<Artwork>();
+    for (Artwork artwork : gallery)
+      iterated.add(artwork);
+    Artwork best = null;
+    for (Artwork artwork : sorted) {
+      if (artwork.getYear() == 1955 && artwork.getCost() <= 300)
+        best = artwork;
+    }
+    if (!iterated.equals(sorted)
+      || !Objects.equals(gallery.bestUnderBudget(1955, 300), best)
+      || !gallery.page(sorted.get(10), 5).getArtworks().equals(sorted.subList(11, 16))) {
+      System.out.println("traversals of a museum with tombstones fail");
+      return false;
+    }
+    // the first page must skip a bought first artwork as well
+    ArtMuseum first = new ArtMuseum();
+    first.enableLazyPurchases(0.9);
+    first.addArtwork(new Artwork("Later", 2005, 100));
+    first.addArtwork(new Artwork("First", 2002, 100));
+    first.addArtwork(new Artwork("Middle", 2003, 100));
+    first.buyArtwork("First", 2002, 100);
+    if (first.getTombstoneCount() != 1 || first.page(null, 10).getArtworks().size() != 2
+      || first.page(null, 10).getArtworks().get(0).getYear() != 2003) {
+      System.out.println("page() returns a bought artwork on the first page");
+      return false;
+    }
+    String before = gallery.toString();
+    gallery.compact();
+    if (gallery.getTombstoneCount() != 0 || !gallery.toString().equals(before)
+      || gallery.size() != sorted.size()) {
+      System.out.println("compact() fails");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseumLoadGenerator. A generated workload written to a trace and
+   * read back must write the same trace again. Running it against both targets, paced and
+   * unpaced, must send every request once, and every add and buy must hit since each thread adds
+   * its own artworks and buys its own slice of the catalog.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testLoadGenerator() {
+    try {
+      ArtMuseumLoadGenerator.Workload workload =
+        ArtMuseumLoadGenerator.generate(2000, 4, 500, new int[] {10, 60, 10, 20}, 7);
+      Path trace = Files.createTempFile("workload", ".trace");
+      Path copy = Files.createTempFile("workload", ".trace");
+      try {
+        workload.write(trace);
+        ArtMuseumLoadGenerator.Workload.read(trace).write(copy);
+        if (!Arrays.equals(Files.readAllBytes(trace), Files.readAllBytes(copy))) {
+          System.out.println("replaying a workload trace fails");
+          return false;
+        }
+      } finally {
+        Files.deleteIfExists(trace);
+        Files.deleteIfExists(copy);
+      }
+      ArtMuseumLoadGenerator.Target[] targets = {
+        ArtMuseumLoadGenerator.sharded(new ShardedArtMuseum()),
+        ArtMuseumLoadGenerator.locked(new ArtMuseum())};
+      double[] rates = {0, 40_000};
+      for (int i = 0; i < targets.length; i++) {
+        ArtMuseumLoadGenerator.Report report =
+          ArtMuseumLoadGenerator.run(workload, targets[i], rates[i]);
+        int total = 0;
+        for (ArtMuseumLoadGenerator.Operation operation : ArtMuseumLoadGenerator.Operation.values())
+          total += report.getCount(operation);
+        ArtMuseumLoadGenerator.Operation add = ArtMuseumLoadGenerator.Operation.ADD;
+        ArtMuseumLoadGenerator.Operation buy = ArtMuseumLoadGenerator.Operation.BUY;
+        if (total != 2000 || report.getHits(add) != report.getCount(add)
+          || report.getHits(buy) != report.getCount(buy) || report.getThroughput() <= 0
+          || report.getPercentile(buy, 0.5) > report.getPercentile(buy, 0.999)) {
+          System.out.println("run() fails:\n" + report);
+          return false;
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      System.out.println("the load generator fails with " + e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the correctness of ArtMuseumServer. A server is started on a free port, then a client
+   * adds, looks up and buys artworks through it, a batch of pipelined requests must be answered in
+   * order, a malformed request must be answered with an error without closing the connection, and
+   * many concurrent clients must all be served. The load generator is also run against the server,
+   * and must close its connections once the run ends.
+   * Non-finite costs and requests with too many fields must be rejected, and the client must not
+   * send names holding tabs or line breaks.
+   *
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testArtMuseumServer() {
+    try (ArtMuseumServer server = new ArtMuseumServer(new ArtMuseum(), 0)) {
+      try (ArtMuseumServer.Client client = new ArtMuseumServer.Client(server.getAddress())) {
+        Artwork starry = new Artwork("Starry Night, Van Gogh", 1889, 100);
+        if (client.getBestArtwork() != null || !client.addArtwork(starry)
+          || client.addArtwork(starry) || !client.addArtwork(new Artwork("Irises", 1889, 50))
+          || !client.lookup("Irises", 1889, 50) || client.lookup("Irises", 1889, 60)
+          || client.lookupAll(1889, 75).size() != 1
+          || !client.getBestArtwork().toString().equals(starry.toString())) {
+          System.out.println("ArtMuseumServer fails to answer a client");
+          return false;
+        }
+        client.buyArtwork("Irises", 1889, 50);
+        try {
+          client.buyArtwork("Irises", 1889, 50);
+          System.out.println("ArtMuseumServer buys an artwork twice");
+          return false;
+        } catch (NoSuchElementException e) {
+          // expected behavior
+        }
+        // a name holding a tab or a line break would desynchronize the requests and responses
+        for (String name : new String[] {"Irises\t1889", "Irises\nBEST", "Irises\r"}) {
+          try {
+            client.lookup(name, 1889, 50);
+            System.out.println("ArtMuseumServer client sends a name with a separator");
+            return false;
+          } catch (IllegalArgumentException e) {
+            // expected behavior
+          }
+        }
+        try {
+          client.lookup("Irises", 999, 50);
+          System.out.println("ArtMuseumServer accepts a malformed request");
+          return false;
+        } catch (ArtMuseumServer.RejectedRequestException e) {
+          // expected behavior
+        }
+        if (!client.lookup("Starry Night, Van Gogh", 1889, 100)) {
+          System.out.println("ArtMuseumServer client fails after a rejected request");
+          return false;
+        }
+      }
+      try (java.net.Socket socket = new java.net.Socket(server.getAddress().getAddress(),
+        server.getPort())) {
+        // a batch of pipelined requests sent in one write
+        socket.getOutputStream().write(("ADD\tSunflowers\t1888\t80\nLOOKUP\tSunflowers\t1888\t80\n"
+          + "LOOKUP\tSunflowers\n" + "LOOKUPALL\t1888\t100\nADD\tx\t2000\tNaN\n"
+          + "LOOKUPALL\t1888\tInfinity\nBUY\tSun\tflowers\t1888\t80\nBEST\nQUIT\n")
+          .getBytes(StandardCharsets.UTF_8));
+        java.io.BufferedReader in = new java.io.BufferedReader(
+          new java.io.InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String[] expected = {"OK\ttrue", "OK\ttrue", null, "OK\t1", "Sunflowers\t1888\t80.0",
+          null, null, null, "OK\tStarry Night, Van Gogh\t1889\t100.0"};
+        for (String line : expected) {
+          String response = in.readLine();
+          if (line == null ? response == null || !response.startsWith("ERR\t")
+            : !line.equals(response)) {
+            System.out.println("ArtMuseumServer fails to answer pipelined requests: " + response);
+            return false;
+          }
+        }
+        if (in.readLine() != null) {
+          System.out.println("ArtMuseumServer does not close the connection on QUIT");
+          return false;
+        }
+      }
+      ArtMuseumLoadGenerator.Workload workload =
+        ArtMuseumLoadGenerator.generate(5000, 64, 50, new int[] {10, 60, 10, 20}, 3);
+      ArtMuseumLoadGenerator.Report report =
+        ArtMuseumLoadGenerator.run(workload, ArtMuseumLoadGenerator.remote(server.getAddress()), 0);
+      ArtMuseumLoadGenerator.Operation buy = ArtMuseumLoadGenerator.Operation.BUY;
+      if (report.getHits(buy) != report.getCount(buy)) {
+        System.out.println("ArtMuseumServer fails under concurrent clients:\n" + report);
+        return false;
+      }
+      // every thread of the load closes its connection once it is done
+      for (int i = 0; i < 500 && server.getConnectionCount() > 0; i++)
+        Thread.sleep(10);
+      if (server.getConnectionCount() != 0) {
+        System.out.println("the load generator leaves " + server.getConnectionCount()
+          + " connections open");
+        return false;
+      }
+      // a rejected request is a miss, and does not stop the thread sending it
+      ArtMuseumLoadGenerator.Operation lookup = ArtMuseumLoadGenerator.Operation.LOOKUP;
+      ArrayList<ArtMuseumLoadGenerator.Request> requests =
+        new ArrayList<ArtMuseumLoadGenerator.Request>();
+      requests.add(new ArtMuseumLoadGenerator.Request(lookup, "Irises", 999, 50));
+      requests.add(new ArtMuseumLoadGenerator.Request(lookup, "Starry Night, Van Gogh", 1889, 100));
+      report = ArtMuseumLoadGenerator.run(
+        new ArtMuseumLoadGenerator.Workload(new ArrayList<Artwork>(), List.of(requests)),
+        ArtMuseumLoadGenerator.remote(server.getAddress()), 0);
+      if (report.getCount(lookup) != 2 || report.getHits(lookup) != 1) {
+        System.out.println("ArtMuseumServer load fails on a rejected request:\n" + report);
+        return false;
+      }
+    } catch (IOException | InterruptedException | ArtMuseumServer.RejectedRequestException e) {
+      System.out.println("ArtMuseumServer fails with " + e);
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Checks for the correctness of ArtworkGallery.lookupAll() method. This test must consider at
    * least 3 test scenarios. (1) Ensures that the ArtworkGallery.lookupAll() method returns an empty
@@ -538,7 +1848,14 @@ public class ArtMuseumTester {
   public static boolean runAllTests() {
     return testAddArtworkToStringSize() && testBuyArtwork() && testHeight() && testGetBestArtwork()
       && testArtworkCompareToEquals() && testLookupAll() & testLookup()
-      && testAddArtworkToStringSize();
+      && testAddArtworkToStringSize() && testBestAndOldestArtworkTracking()
+      && testSelfAdjustingMuseum() && testCountAndTotalValue()
+      && testBloomFilter() && testShardedArtMuseum()
+      && testPurchaseArtwork() && testCatalogSubscription() && testCsvImport()
+      && testExport() && testMergeAndSplit() && testRebalance()
+      && testPage() && testNavigation() && testYearHistogram()
+      && testQuery() && testLazyPurchases() && testArtworkSortKey()
+      && testLoadGenerator() && testArtMuseumServer();
   }
 
   /**
@@ -552,6 +1869,25 @@ public class ArtMuseumTester {
     System.out.println("testLookup(): " + testLookup());
     System.out.println("testHeight(): " + testHeight());
     System.out.println("testGetBestArtwork(): " + testGetBestArtwork());
+    System.out.println("testBestAndOldestArtworkTracking(): " + testBestAndOldestArtworkTracking());
+    System.out.println("testSelfAdjustingMuseum(): " + testSelfAdjustingMuseum());
+    System.out.println("testCountAndTotalValue(): " + testCountAndTotalValue());
+    System.out.println("testBloomFilter(): " + testBloomFilter());
+    System.out.println("testShardedArtMuseum(): " + testShardedArtMuseum());
+    System.out.println("testPurchaseArtwork(): " + testPurchaseArtwork());
+    System.out.println("testCatalogSubscription(): " + testCatalogSubscription());
+    System.out.println("testCsvImport(): " + testCsvImport());
+    System.out.println("testExport(): " + testExport());
+    System.out.println("testMergeAndSplit(): " + testMergeAndSplit());
+    System.out.println("testRebalance(): " + testRebalance());
+    System.out.println("testPage(): " + testPage());
+    System.out.println("testNavigation(): " + testNavigation());
+    System.out.println("testYearHistogram(): " + testYearHistogram());
+    System.out.println("testQuery(): " + testQuery());
+    System.out.println("testLazyPurchases(): " + testLazyPurchases());
+    System.out.println("testArtworkSortKey(): " + testArtworkSortKey());
+    System.out.println("testLoadGenerator(): " + testLoadGenerator());
+    System.out.println("testArtMuseumServer(): " + testArtMuseumServer());
     System.out.println("testLookupAll(): " + testLookupAll());
     System.out.println("testBuyArtwork(): " + testBuyArtwork());
     System.out.println("runAllTests(): " + runAllTests());
@@ -9,6 +9,13 @@ public class Artwork implements Comparable<Artwork> {
   private String name; // name of the artwork piece, artist
   private int year; // year in which the artwork was created
   private double cost; // cost of the artwork
+  // sort keys precomputed for compareTo(): the bits of a positive double are ordered like its
+  // value, and the first chars of the name, packed in a long, order most names without a String
+  // comparison
+  private final long costKey; // raw bits of cost
+  private final long namePrefixKey; // first NAME_PREFIX_LENGTH chars of name, zero padded
+
+  private static final int NAME_PREFIX_LENGTH = Long.SIZE / Character.SIZE;
 
   /**
    * Creates a new art piece with given attributes
@@ -16,21 +23,38 @@ public class Artwork implements Comparable<Artwork> {
    * @param name name of the artwork piece, artist
    * @param year year of creation of this artwork piece
    * @param cost the cost of this artwork piece in dollars
-   * @throws IllegalArgumentException if year is less than 1000, if cost is negative or zero or
-   *                                  if name is null or an empty string
+   * @throws IllegalArgumentException if year is less than 1000, if cost is negative, zero or not
+   *                                  a finite number, or if name is null or an empty string
    */
   public Artwork(String name, int year, double cost) {
     // check the validity of the input parameters
     if (year < 1000)
       throw new IllegalArgumentException("Invalid year of creation. Too old.");
-    if (cost <= 0.0)
-      throw new IllegalArgumentException("Invalid cost. The cost must be positive");
+    if (!(cost > 0.0) || Double.isInfinite(cost))
+      throw new IllegalArgumentException("Invalid cost. The cost must be positive and finite");
     if (name == null || name.isBlank())
       throw new IllegalArgumentException("Invalid artwork name");
     // assign the artwork attributes
     this.year = year;
     this.cost = cost;
     this.name = name;
+    this.costKey = Double.doubleToLongBits(cost);
+    this.namePrefixKey = namePrefixKey(name);
+  }
+
+  /**
+   * Packs the first chars of a name into a long, the first char in the highest bits. Comparing the
+   * packed longs as unsigned numbers orders names like String.compareTo(), except that names
+   * sharing their first NAME_PREFIX_LENGTH chars (or ending with zero chars) compare equal.
+   *
+   * @param name name to pack
+   * @return the packed prefix of name, padded with zero chars
+   */
+  private static long namePrefixKey(String name) {
+    long key = 0;
+    for (int i = 0; i < NAME_PREFIX_LENGTH; i++)
+      key = (key << Character.SIZE) | (i < name.length() ? name.charAt(i) : 0);
+    return key;
   }
 
   /**
@@ -70,26 +94,19 @@ public class Artwork implements Comparable<Artwork> {
    * otherArtwork, or if they have the same year and the same cost and this artwork has a
    * lower lexical order name than otherArtwork name; String comparisons are case-sensitive.
    * otherwise returns an integer greater than 0.
+   * The comparison uses the precomputed primitive keys, so in the common case it costs a few int
+   * and long comparisons; the names themselves are only compared when their first chars match.
    */
   @Override public int compareTo(Artwork otherArtwork) {
-    if (this.getYear() == otherArtwork.getYear()) {
-      if (this.getCost() == otherArtwork.getCost()) {
-        if (this.getName().equals(otherArtwork.getName())) {
-          return 0;
-        } else if (this.getName().compareTo(otherArtwork.getName()) < 0) {
-          return -1;
-        } else
-          return 1;
-      } else if (this.getCost() > otherArtwork.getCost()) {
-        return 1;
-      } else
-        return -1;
-    }
-      else if (this.getYear() > otherArtwork.getYear()) {
-        return 1;
-      } else {
-        return -1;
-    }
+    if (this.year != otherArtwork.year)
+      return this.year < otherArtwork.year ? -1 : 1;
+    // costs are positive, so their bits compare like their values
+    if (this.costKey != otherArtwork.costKey)
+      return this.costKey < otherArtwork.costKey ? -1 : 1;
+    if (this.namePrefixKey != otherArtwork.namePrefixKey)
+      return Long.compareUnsigned(this.namePrefixKey, otherArtwork.namePrefixKey) < 0 ? -1 : 1;
+    int comparison = this.name.compareTo(otherArtwork.name);
+    return comparison == 0 ? 0 : comparison < 0 ? -1 : 1;
   }
 
 
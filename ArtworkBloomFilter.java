@@ -0,0 +1,117 @@
+/**
+ * This class implements a Bloom filter over artworks. It answers whether an artwork might have
+ * been added to it, with no false negatives and a bounded rate of false positives. The identity of
+ * an artwork is its name, year and cost, as used by Artwork.compareTo(). Artworks cannot be
+ * removed from a Bloom filter, so the filter must be rebuilt when its contents get stale.
+ *
+ */
+public class ArtworkBloomFilter {
+  private final long[] bits; // bit array of the filter
+  private final int bitCount; // number of bits of the filter
+  private final int hashCount; // number of bit positions set per artwork
+  private final int capacity; // expected number of insertions
+  private int insertions; // number of artworks added to this filter
+
+  /**
+   * Creates an empty Bloom filter sized to hold a given number of artworks with a given false
+   * positive rate
+   *
+   * @param capacity          expected number of artworks to add to this filter
+   * @param falsePositiveRate target false positive rate once capacity artworks have been added
+   * @throws IllegalArgumentException if capacity is not positive or if falsePositiveRate is not
+   *                                  strictly between 0 and 1
+   */
+  public ArtworkBloomFilter(int capacity, double falsePositiveRate) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("Invalid capacity. The capacity must be positive");
+    if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0))
+      throw new IllegalArgumentException("Invalid false positive rate. It must be in (0, 1)");
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bitCount = (int) Math.min(Math.max(optimalBits, 64), Integer.MAX_VALUE - 63);
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+    this.bits = new long[(bitCount + 63) / 64];
+    this.capacity = capacity;
+  }
+
+  /**
+   * Getter of the expected number of artworks of this filter
+   *
+   * @return the capacity of this filter
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Getter of the number of artworks added to this filter
+   *
+   * @return the number of insertions into this filter
+   */
+  public int getInsertions() {
+    return insertions;
+  }
+
+  /**
+   * Adds an artwork to this filter
+   *
+   * @param artwork artwork to add
+   */
+  public void add(Artwork artwork) {
+    long hash = hash(artwork);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitCount;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+    insertions++;
+  }
+
+  /**
+   * Checks whether an artwork might have been added to this filter
+   *
+   * @param artwork artwork to check
+   * @return false if artwork was definitely never added to this filter, true if it might have been
+   */
+  public boolean mightContain(Artwork artwork) {
+    long hash = hash(artwork);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitCount;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Computes a 64-bit hash of the name, year and cost of an artwork. The two halves of the hash
+   * are used to derive the bit positions of the artwork.
+   *
+   * @param artwork artwork to hash
+   * @return the hash of artwork
+   */
+  protected static long hash(Artwork artwork) {
+    long hash = artwork.getName().hashCode();
+    hash = mix(hash * 31 + artwork.getYear());
+    hash = mix(hash ^ Double.doubleToLongBits(artwork.getCost()));
+    return hash;
+  }
+
+  /**
+   * Scrambles the bits of a value (finalizer of the MurmurHash3 64-bit hash function)
+   *
+   * @param value value to scramble
+   * @return the scrambled value
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
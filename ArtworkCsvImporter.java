@@ -0,0 +1,364 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class imports a catalog of artworks from a CSV file with one artwork per line in the format
+ * name,year,cost. The name may be quoted with double quotes (a quote inside a quoted name is
+ * doubled); an unquoted name may contain commas, since the year and the cost are the last two
+ * fields. An optional header line "name,year,cost" and blank lines are skipped.
+ *
+ * The file is read through a FileChannel in chunks cut at line boundaries. The chunks are parsed
+ * and validated in parallel with the same rules as the Artwork constructor, then all the artworks
+ * are sorted and the ArtMuseum is built in one bulk step. Invalid rows are reported with their
+ * line number instead of aborting the import, and duplicate artworks are skipped.
+ *
+ */
+public class ArtworkCsvImporter {
+  private final int chunkSize; // number of bytes read from the file at once
+  private final int parallelism; // number of threads parsing chunks
+
+  /**
+   * Result of an import: the museum built from the valid rows, and the rejected rows
+   */
+  public static class Result {
+    private final ArtMuseum museum; // museum holding the imported artworks
+    private final List<RowError> errors; // invalid rows, in line order
+    private final int duplicateCount; // number of valid rows skipped as duplicates
+
+    /**
+     * Creates the result of an import
+     *
+     * @param museum         museum holding the imported artworks
+     * @param errors         invalid rows, in line order
+     * @param duplicateCount number of valid rows skipped as duplicates
+     */
+    private Result(ArtMuseum museum, List<RowError> errors, int duplicateCount) {
+      this.museum = museum;
+      this.errors = Collections.unmodifiableList(errors);
+      this.duplicateCount = duplicateCount;
+    }
+
+    /**
+     * Gets the museum built from the valid rows
+     *
+     * @return the museum holding the imported artworks
+     */
+    public ArtMuseum getMuseum() {
+      return museum;
+    }
+
+    /**
+     * Gets the rows which were rejected
+     *
+     * @return an unmodifiable list of the invalid rows, in line order
+     */
+    public List<RowError> getErrors() {
+      return errors;
+    }
+
+    /**
+     * Gets the number of valid rows which matched an artwork of a previous row
+     *
+     * @return the number of rows skipped as duplicates
+     */
+    public int getDuplicateCount() {
+      return duplicateCount;
+    }
+  }
+
+  /**
+   * An invalid row of a CSV file
+   */
+  public static class RowError {
+    private final long line; // line number of the row, starting at 1
+    private final String row; // content of the row
+    private final String message; // reason why the row was rejected
+
+    /**
+     * Creates a new row error
+     *
+     * @param line    line number of the row, starting at 1
+     * @param row     content of the row
+     * @param message reason why the row was rejected
+     */
+    private RowError(long line, String row, String message) {
+      this.line = line;
+      this.row = row;
+      this.message = message;
+    }
+
+    /**
+     * Gets the line number of the invalid row
+     *
+     * @return the line number, starting at 1
+     */
+    public long getLine() {
+      return line;
+    }
+
+    /**
+     * Gets the content of the invalid row
+     *
+     * @return the row as read from the file
+     */
+    public String getRow() {
+      return row;
+    }
+
+    /**
+     * Gets the reason why the row was rejected
+     *
+     * @return the error message
+     */
+    public String getMessage() {
+      return message;
+    }
+
+    /**
+     * Returns a String representation of this error
+     *
+     * @return this error as a String in the format "line N: message: row"
+     */
+    public String toString() {
+      return "line " + line + ": " + message + ": " + row;
+    }
+  }
+
+  /**
+   * Artworks and errors parsed from one chunk of the file. Line numbers of the errors are relative
+   * to the first line of the chunk until the import fixes them.
+   */
+  private static class ChunkResult {
+    private final ArrayList<Artwork> artworks = new ArrayList<Artwork>();
+    private final ArrayList<RowError> errors = new ArrayList<RowError>();
+    private int lineCount; // number of lines in the chunk
+  }
+
+  /**
+   * Creates an importer reading 4 MiB chunks and parsing them on all the available processors
+   */
+  public ArtworkCsvImporter() {
+    this(4 << 20, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates an importer
+   *
+   * @param chunkSize   number of bytes read from the file at once, a chunk grows if one line is
+   *                    longer
+   * @param parallelism number of threads parsing chunks
+   * @throws IllegalArgumentException if chunkSize or parallelism is not positive
+   */
+  public ArtworkCsvImporter(int chunkSize, int parallelism) {
+    if (chunkSize <= 0 || parallelism <= 0)
+      throw new IllegalArgumentException("Invalid chunk size or parallelism. It must be positive");
+    this.chunkSize = chunkSize;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Imports a CSV file into a new ArtMuseum
+   *
+   * @param file path of the CSV file to import
+   * @return the museum built from the valid rows, and the rejected rows
+   * @throws IOException if the file cannot be read
+   */
+  public Result importCatalog(Path file) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    ArrayList<ChunkResult> chunks = new ArrayList<ChunkResult>();
+    ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<Future<ChunkResult>>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+      boolean firstChunk = true;
+      while (true) {
+        int read = channel.read(buffer);
+        if (read < 0 && buffer.position() == 0)
+          break;
+        int end = read < 0 ? buffer.position() : lastLineEnd(buffer);
+        if (end == 0) {
+          // a single line does not fit in the buffer, grow it
+          ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+          buffer.flip();
+          larger.put(buffer);
+          buffer = larger;
+          continue;
+        }
+        byte[] chunk = Arrays.copyOf(buffer.array(), end);
+        boolean skipHeader = firstChunk;
+        firstChunk = false;
+        inFlight.add(executor.submit(() -> parseChunk(chunk, skipHeader)));
+        // keep the remainder of the last incomplete line for the next chunk
+        buffer.flip();
+        buffer.position(end);
+        buffer.compact();
+        // bound the number of chunks held in memory
+        if (inFlight.size() >= 2 * parallelism)
+          chunks.add(inFlight.poll().get());
+        if (read < 0)
+          break;
+      }
+      while (!inFlight.isEmpty())
+        chunks.add(inFlight.poll().get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Import interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to parse " + file, e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return buildResult(chunks);
+  }
+
+  /**
+   * Finds the end of the last complete line in the bytes read into a buffer
+   *
+   * @param buffer buffer in write mode, holding bytes at positions [0, position)
+   * @return the index just after the last line feed, 0 if there is no line feed
+   */
+  private static int lastLineEnd(ByteBuffer buffer) {
+    byte[] bytes = buffer.array();
+    for (int i = buffer.position() - 1; i >= 0; i--) {
+      if (bytes[i] == '\n')
+        return i + 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Parses the lines of a chunk into artworks
+   *
+   * @param chunk      bytes of complete lines, the last one may miss its line feed
+   * @param skipHeader true if the chunk starts the file, so its first line may be a header
+   * @return the artworks and the errors of the chunk
+   */
+  private static ChunkResult parseChunk(byte[] chunk, boolean skipHeader) {
+    ChunkResult result = new ChunkResult();
+    int start = 0;
+    while (start < chunk.length) {
+      int end = start;
+      while (end < chunk.length && chunk[end] != '\n')
+        end++;
+      int length = end - start;
+      if (length > 0 && chunk[end - 1] == '\r')
+        length--;
+      String line = new String(chunk, start, length, StandardCharsets.UTF_8);
+      result.lineCount++;
+      if (!line.isBlank() && !(skipHeader && result.lineCount == 1
+        && line.replace(" ", "").equalsIgnoreCase("name,year,cost"))) {
+        try {
+          result.artworks.add(parseRow(line));
+        } catch (IllegalArgumentException e) {
+          result.errors.add(new RowError(result.lineCount, line, e.getMessage()));
+        }
+      }
+      start = end + 1;
+    }
+    return result;
+  }
+
+  /**
+   * Parses a row of the CSV file into an artwork
+   *
+   * @param line row to parse
+   * @return the artwork of the row
+   * @throws IllegalArgumentException if the row is malformed, or if the Artwork constructor
+   *                                  rejects its fields
+   */
+  protected static Artwork parseRow(String line) {
+    String name;
+    String rest;
+    if (line.startsWith("\"")) {
+      // quoted name, a doubled quote stands for a quote
+      StringBuilder builder = new StringBuilder();
+      int i = 1;
+      while (true) {
+        if (i >= line.length())
+          throw new IllegalArgumentException("Unterminated quoted name");
+        char c = line.charAt(i++);
+        if (c == '"') {
+          if (i < line.length() && line.charAt(i) == '"') {
+            builder.append('"');
+            i++;
+          } else
+            break;
+        } else
+          builder.append(c);
+      }
+      if (i >= line.length() || line.charAt(i) != ',')
+        throw new IllegalArgumentException("Expected a comma after the quoted name");
+      name = builder.toString();
+      rest = line.substring(i + 1);
+    } else {
+      int costComma = line.lastIndexOf(',');
+      int yearComma = costComma <= 0 ? -1 : line.lastIndexOf(',', costComma - 1);
+      if (yearComma < 0)
+        throw new IllegalArgumentException("Expected the fields name,year,cost");
+      name = line.substring(0, yearComma);
+      rest = line.substring(yearComma + 1);
+    }
+    int comma = rest.indexOf(',');
+    if (comma < 0 || rest.indexOf(',', comma + 1) >= 0)
+      throw new IllegalArgumentException("Expected the fields name,year,cost");
+    int year;
+    double cost;
+    try {
+      year = Integer.parseInt(rest.substring(0, comma).trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid year " + rest.substring(0, comma).trim());
+    }
+    try {
+      cost = Double.parseDouble(rest.substring(comma + 1).trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cost " + rest.substring(comma + 1).trim());
+    }
+    return new Artwork(name, year, cost);
+  }
+
+  /**
+   * Merges the results of all the chunks: fixes the line numbers of the errors, sorts the
+   * artworks, skips duplicates, and builds the museum in one bulk step
+   *
+   * @param chunks results of the chunks, in file order
+   * @return the result of the import
+   */
+  private static Result buildResult(ArrayList<ChunkResult> chunks) {
+    ArrayList<RowError> errors = new ArrayList<RowError>();
+    int total = 0;
+    long firstLine = 0;
+    for (ChunkResult chunk : chunks) {
+      for (RowError error : chunk.errors)
+        errors.add(new RowError(firstLine + error.line, error.row, error.message));
+      firstLine += chunk.lineCount;
+      total += chunk.artworks.size();
+    }
+    Artwork[] artworks = new Artwork[total];
+    int index = 0;
+    for (ChunkResult chunk : chunks) {
+      for (Artwork artwork : chunk.artworks)
+        artworks[index++] = artwork;
+      chunk.artworks.clear();
+    }
+    // a stable sort keeps the first of matching artworks first
+    Arrays.parallelSort(artworks);
+    ArrayList<Artwork> sorted = new ArrayList<Artwork>(total);
+    for (Artwork artwork : artworks) {
+      if (sorted.isEmpty() || sorted.get(sorted.size() - 1).compareTo(artwork) != 0)
+        sorted.add(artwork);
+    }
+    return new Result(ArtMuseum.fromSortedArtworks(sorted), errors, total - sorted.size());
+  }
+}
@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class exports the catalog of an ArtMuseum to a channel, such as a FileChannel, without
+ * building the whole catalog in memory. The in-order traversal of the museum is encoded artwork
+ * by artwork into a direct ByteBuffer, which is written to the channel each time it is full and
+ * reused, so the memory used does not depend on the size of the catalog.
+ *
+ * Two formats are supported. The text format is the same as ArtMuseum.toString(), encoded in
+ * UTF-8. The binary format starts with the magic number 0x4152544D ("ARTM") and the number of
+ * artworks as an int, followed by each artwork in increasing order as the length of its UTF-8
+ * name as an int, the name, its year as an int and its cost as a double, all big-endian. A binary
+ * export can be read back with importBinary().
+ *
+ * An exporter reuses its buffer, so it must not be used by several threads at the same time.
+ *
+ */
+public class ArtworkExporter {
+  public static final int BINARY_MAGIC = 0x4152544D; // "ARTM"
+  // an artwork with an empty name: its name length, year and cost
+  private static final int MIN_RECORD_SIZE = Integer.BYTES + Integer.BYTES + Double.BYTES;
+  private static final int MAX_INITIAL_CAPACITY = 1 << 16; // artworks allocated before reading
+
+  private final ByteBuffer buffer; // reusable buffer between the traversal and the channel
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder(); // text encoder
+
+  /**
+   * Creates an exporter with a 64 KiB buffer
+   */
+  public ArtworkExporter() {
+    this(64 << 10);
+  }
+
+  /**
+   * Creates an exporter
+   *
+   * @param bufferSize size of the direct buffer in bytes, at least 16
+   * @throws IllegalArgumentException if bufferSize is less than 16
+   */
+  public ArtworkExporter(int bufferSize) {
+    if (bufferSize < 16)
+      throw new IllegalArgumentException("Invalid buffer size. It must be at least 16 bytes");
+    buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Writes the artworks of a museum to a channel in the text format of ArtMuseum.toString()
+   *
+   * @param museum  museum to export
+   * @param channel channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel cannot be written
+   */
+  public long exportText(ArtMuseum museum, WritableByteChannel channel) throws IOException {
+    buffer.clear();
+    long written = 0;
+    for (Artwork artwork : museum) {
+      written += encode(artwork.toString(), channel);
+      written += encode("\n", channel);
+    }
+    return written + drain(channel);
+  }
+
+  /**
+   * Writes the artworks of a museum to a channel in the binary format
+   *
+   * @param museum  museum to export
+   * @param channel channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel cannot be written
+   */
+  public long exportBinary(ArtMuseum museum, WritableByteChannel channel) throws IOException {
+    buffer.clear();
+    buffer.putInt(BINARY_MAGIC);
+    buffer.putInt(museum.size());
+    long written = 0;
+    for (Artwork artwork : museum) {
+      byte[] name = artwork.getName().getBytes(StandardCharsets.UTF_8);
+      if (buffer.remaining() < Integer.BYTES)
+        written += drain(channel);
+      buffer.putInt(name.length);
+      // a long name is written in as many pieces as needed
+      for (int offset = 0; offset < name.length; ) {
+        if (!buffer.hasRemaining())
+          written += drain(channel);
+        int length = Math.min(buffer.remaining(), name.length - offset);
+        buffer.put(name, offset, length);
+        offset += length;
+      }
+      if (buffer.remaining() < Integer.BYTES + Double.BYTES)
+        written += drain(channel);
+      buffer.putInt(artwork.getYear());
+      buffer.putDouble(artwork.getCost());
+    }
+    return written + drain(channel);
+  }
+
+  /**
+   * Reads a museum back from a channel in the binary format. The artworks are read in increasing
+   * order, so the museum is built in one bulk step.
+   *
+   * The number of artworks and the name lengths are read from the channel and cannot be trusted,
+   * so memory is only allocated as artworks are actually read. A count or a name length larger
+   * than what is left of a SeekableByteChannel is rejected before reading further.
+   *
+   * @param channel channel to read from
+   * @return a new museum holding the artworks read
+   * @throws IOException if the channel cannot be read, or if its content is not a valid binary
+   *                     export
+   */
+  public ArtMuseum importBinary(ReadableByteChannel channel) throws IOException {
+    buffer.clear();
+    buffer.flip();
+    fill(channel, Integer.BYTES + Integer.BYTES);
+    if (buffer.getInt() != BINARY_MAGIC)
+      throw new IOException("Not a binary artwork export");
+    int count = buffer.getInt();
+    if (count < 0)
+      throw new IOException("Invalid number of artworks " + count);
+    if (count > remaining(channel) / MIN_RECORD_SIZE)
+      throw new IOException("Truncated binary artwork export of " + count + " artworks");
+    ArrayList<Artwork> artworks = new ArrayList<Artwork>(Math.min(count, MAX_INITIAL_CAPACITY));
+    for (int i = 0; i < count; i++) {
+      fill(channel, Integer.BYTES);
+      int length = buffer.getInt();
+      if (length < 0)
+        throw new IOException("Invalid name length " + length);
+      if (length > remaining(channel))
+        throw new IOException("Truncated binary artwork export of a name of " + length + " bytes");
+      // a long name grows as it is read, up to its length
+      byte[] name = new byte[Math.min(length, buffer.capacity())];
+      for (int offset = 0; offset < length; ) {
+        if (!buffer.hasRemaining())
+          fill(channel, 1);
+        if (offset == name.length)
+          name = Arrays.copyOf(name, (int) Math.min(length, 2L * name.length));
+        int piece = Math.min(buffer.remaining(), name.length - offset);
+        buffer.get(name, offset, piece);
+        offset += piece;
+      }
+      fill(channel, Integer.BYTES + Double.BYTES);
+      try {
+        artworks.add(new Artwork(new String(name, StandardCharsets.UTF_8), buffer.getInt(),
+          buffer.getDouble()));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid artwork " + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    try {
+      return ArtMuseum.fromSortedArtworks(artworks);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Artworks of the binary export are not sorted", e);
+    }
+  }
+
+  /**
+   * Encodes a String into the buffer in UTF-8, writing the buffer to the channel whenever it is
+   * full
+   *
+   * @param text    text to encode
+   * @param channel channel to write to
+   * @return the number of bytes written to the channel
+   * @throws IOException if the channel cannot be written
+   */
+  private long encode(String text, WritableByteChannel channel) throws IOException {
+    long written = 0;
+    CharBuffer chars = CharBuffer.wrap(text);
+    encoder.reset();
+    while (true) {
+      CoderResult result = encoder.encode(chars, buffer, true);
+      if (result.isOverflow())
+        written += drain(channel);
+      else if (result.isUnderflow())
+        break;
+      else
+        result.throwException();
+    }
+    while (encoder.flush(buffer).isOverflow())
+      written += drain(channel);
+    return written;
+  }
+
+  /**
+   * Writes all the bytes of the buffer to the channel, and clears the buffer
+   *
+   * @param channel channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel cannot be written
+   */
+  private long drain(WritableByteChannel channel) throws IOException {
+    buffer.flip();
+    long written = buffer.remaining();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+    return written;
+  }
+
+  /**
+   * Returns an upper bound of the number of bytes left to read, from the buffer and the channel
+   *
+   * @param channel channel to read from
+   * @return the bytes left if the channel is a SeekableByteChannel, Long.MAX_VALUE otherwise
+   * @throws IOException if the size or the position of the channel cannot be read
+   */
+  private long remaining(ReadableByteChannel channel) throws IOException {
+    if (!(channel instanceof SeekableByteChannel))
+      return Long.MAX_VALUE;
+    SeekableByteChannel seekable = (SeekableByteChannel) channel;
+    return buffer.remaining() + Math.max(0, seekable.size() - seekable.position());
+  }
+
+  /**
+   * Reads from the channel until the buffer holds at least a given number of unread bytes
+   *
+   * @param channel channel to read from
+   * @param needed  number of bytes needed, at most the capacity of the buffer
+   * @throws IOException if the channel cannot be read or ends too early
+   */
+  private void fill(ReadableByteChannel channel, int needed) throws IOException {
+    if (buffer.remaining() >= needed)
+      return;
+    buffer.compact();
+    while (buffer.position() < needed) {
+      if (channel.read(buffer) < 0)
+        throw new IOException("Truncated binary artwork export");
+    }
+    buffer.flip();
+  }
+}
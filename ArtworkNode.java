@@ -0,0 +1,134 @@
+/**
+ * Binary node of the artwork catalog BST which, in addition to its artwork, keeps the number of
+ * artworks and their total cost in the subtree rooted at this node. These aggregates allow range
+ * counting and summing queries without traversing the whole tree.
+ *
+ * A node can also be marked sold, when its artwork was bought but the node is kept in the tree as
+ * a tombstone until the next compaction. The aggregates only count the artworks which are not
+ * sold, and the number of tombstones of each subtree is kept as well.
+ *
+ */
+public class ArtworkNode extends BSTNode<Artwork> {
+  private int count; // number of artworks in the subtree rooted at this node
+  private double totalCost; // total cost of the artworks in the subtree rooted at this node
+  private boolean sold; // true if the artwork of this node was bought, making it a tombstone
+  private int soldCount; // number of tombstones in the subtree rooted at this node
+
+  /**
+   * Creates a leaf ArtworkNode with a given artwork
+   *
+   * @param data artwork carried by this node
+   * @throws NullPointerException if data is null
+   */
+  public ArtworkNode(Artwork data) {
+    super(data);
+    update(this);
+  }
+
+  /**
+   * Creates an ArtworkNode with a given artwork, a reference to a left child and a reference to a
+   * right child. The aggregates of both children must be up to date.
+   *
+   * @param data  artwork held by this node
+   * @param left  reference to the left child
+   * @param right reference to the right child
+   * @throws NullPointerException if data is null
+   */
+  public ArtworkNode(Artwork data, BSTNode<Artwork> left, BSTNode<Artwork> right) {
+    super(data, left, right);
+    update(this);
+  }
+
+  /**
+   * Getter of the number of artworks stored in the subtree rooted at this node
+   *
+   * @return the count of this subtree
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Getter of the total cost of the artworks stored in the subtree rooted at this node
+   *
+   * @return the total cost of this subtree
+   */
+  public double getTotalCost() {
+    return totalCost;
+  }
+
+  /**
+   * Checks whether the artwork of this node was bought
+   *
+   * @return true if this node is a tombstone, false otherwise
+   */
+  public boolean isSold() {
+    return sold;
+  }
+
+  /**
+   * Marks the artwork of this node as bought or not. The aggregates of this node and of its
+   * ancestors must be updated afterwards.
+   *
+   * @param sold true to make this node a tombstone, false to revive it
+   */
+  void setSold(boolean sold) {
+    this.sold = sold;
+  }
+
+  /**
+   * Checks whether node is a tombstone
+   *
+   * @param node node to check, must not be null
+   * @return true if the artwork of node was bought, false otherwise
+   */
+  public static boolean isSold(BSTNode<Artwork> node) {
+    return ((ArtworkNode) node).sold;
+  }
+
+  /**
+   * Gets the number of tombstones in the subtree rooted at node
+   *
+   * @param node "root" of a subtree, may be null
+   * @return the number of nodes marked sold in the subtree rooted at node, 0 if node is null
+   */
+  public static int soldCountOf(BSTNode<Artwork> node) {
+    return node == null ? 0 : ((ArtworkNode) node).soldCount;
+  }
+
+  /**
+   * Gets the number of artworks stored in the subtree rooted at node
+   *
+   * @param node "root" of a subtree, may be null
+   * @return the count of the subtree rooted at node, 0 if node is null
+   */
+  public static int countOf(BSTNode<Artwork> node) {
+    return node == null ? 0 : ((ArtworkNode) node).count;
+  }
+
+  /**
+   * Gets the total cost of the artworks stored in the subtree rooted at node
+   *
+   * @param node "root" of a subtree, may be null
+   * @return the total cost of the subtree rooted at node, 0.0 if node is null
+   */
+  public static double totalCostOf(BSTNode<Artwork> node) {
+    return node == null ? 0.0 : ((ArtworkNode) node).totalCost;
+  }
+
+  /**
+   * Recomputes the aggregates of node from its own artwork and the aggregates of its children.
+   * This must be called on every node whose children changed, from the bottom up.
+   *
+   * @param node node to update, must not be null
+   */
+  public static void update(BSTNode<Artwork> node) {
+    ArtworkNode current = (ArtworkNode) node;
+    int self = current.sold ? 0 : 1;
+    current.count = self + countOf(node.getLeft()) + countOf(node.getRight());
+    current.totalCost = (current.sold ? 0.0 : node.getData().getCost())
+      + totalCostOf(node.getLeft()) + totalCostOf(node.getRight());
+    current.soldCount =
+      1 - self + soldCountOf(node.getLeft()) + soldCountOf(node.getRight());
+  }
+}
@@ -0,0 +1,51 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class models a page of the catalog of an ArtMuseum, returned by ArtMuseum.page(). It holds
+ * consecutive artworks in increasing order, and the cursor from which the next page resumes.
+ *
+ */
+public class ArtworkPage {
+  private final List<Artwork> artworks; // artworks of this page, in increasing order
+  private final Artwork nextCursor; // last artwork of this page if more artworks follow, or null
+
+  /**
+   * Creates a page of the catalog
+   *
+   * @param artworks   artworks of this page, in increasing order
+   * @param nextCursor last artwork of this page if more artworks follow it, null otherwise
+   */
+  public ArtworkPage(List<Artwork> artworks, Artwork nextCursor) {
+    this.artworks = Collections.unmodifiableList(artworks);
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Gets the artworks of this page
+   *
+   * @return an unmodifiable list of the artworks of this page, in increasing order
+   */
+  public List<Artwork> getArtworks() {
+    return artworks;
+  }
+
+  /**
+   * Gets the cursor to pass to ArtMuseum.page() to get the next page
+   *
+   * @return the last artwork of this page if more artworks follow it, null if this page is the
+   *         last one
+   */
+  public Artwork getNextCursor() {
+    return nextCursor;
+  }
+
+  /**
+   * Checks whether more artworks follow this page
+   *
+   * @return true if there is a next page, false otherwise
+   */
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * This class models a compound search over the catalog of an ArtMuseum, run by ArtMuseum.query().
+ * A query combines any of a range of years, a range of costs and a substring of the name; unset
+ * predicates match every artwork. The setters return this query, so that they can be chained:
+ *
+ * new ArtworkQuery().yearBetween(1880, 1890).costBetween(0, 5000).nameContains("Van Gogh")
+ *
+ */
+public class ArtworkQuery {
+  private int fromYear = Integer.MIN_VALUE; // first year of the range, inclusive
+  private int toYear = Integer.MAX_VALUE; // last year of the range, inclusive
+  private double minCost = Double.NEGATIVE_INFINITY; // minimum cost, inclusive
+  private double maxCost = Double.POSITIVE_INFINITY; // maximum cost, inclusive
+  private String nameSubstring; // substring of the name, case-sensitive, null if unset
+
+  /**
+   * Restricts this query to the artworks created between two years, both inclusive
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return this query
+   */
+  public ArtworkQuery yearBetween(int fromYear, int toYear) {
+    this.fromYear = fromYear;
+    this.toYear = toYear;
+    return this;
+  }
+
+  /**
+   * Restricts this query to the artworks whose cost is between two bounds, both inclusive
+   *
+   * @param minCost minimum cost
+   * @param maxCost maximum cost
+   * @return this query
+   */
+  public ArtworkQuery costBetween(double minCost, double maxCost) {
+    this.minCost = minCost;
+    this.maxCost = maxCost;
+    return this;
+  }
+
+  /**
+   * Restricts this query to the artworks whose name contains a given substring, case-sensitive
+   *
+   * @param nameSubstring substring of the name, or null to match every name
+   * @return this query
+   */
+  public ArtworkQuery nameContains(String nameSubstring) {
+    this.nameSubstring = nameSubstring;
+    return this;
+  }
+
+  /**
+   * Gets the first year of the range of this query
+   *
+   * @return the first year, Integer.MIN_VALUE if the year is not restricted
+   */
+  public int getFromYear() {
+    return fromYear;
+  }
+
+  /**
+   * Gets the last year of the range of this query
+   *
+   * @return the last year, Integer.MAX_VALUE if the year is not restricted
+   */
+  public int getToYear() {
+    return toYear;
+  }
+
+  /**
+   * Checks whether this query restricts the year of creation
+   *
+   * @return true if a year range was set, false otherwise
+   */
+  public boolean hasYearRange() {
+    return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+  }
+
+  /**
+   * Checks whether an artwork satisfies all the predicates of this query
+   *
+   * @param artwork artwork to check
+   * @return true if artwork matches this query, false otherwise
+   */
+  public boolean matches(Artwork artwork) {
+    return artwork.getYear() >= fromYear && artwork.getYear() <= toYear
+      && artwork.getCost() >= minCost && artwork.getCost() <= maxCost
+      && (nameSubstring == null || artwork.getName().contains(nameSubstring));
+  }
+
+  /**
+   * Returns a String representation of the predicates of this query
+   *
+   * @return this query as a String
+   */
+  public String toString() {
+    return "year in [" + fromYear + ", " + toYear + "], cost in [" + minCost + ", " + maxCost
+      + "]" + (nameSubstring == null ? "" : ", name contains \"" + nameSubstring + "\"");
+  }
+}
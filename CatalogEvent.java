@@ -0,0 +1,69 @@
+/**
+ * This class models a change of the catalog of an ArtMuseum: an artwork which was added to it or
+ * bought from it. Events of a museum are numbered by increasing sequence numbers, without gaps, in
+ * the order in which the changes happened.
+ *
+ */
+public class CatalogEvent {
+
+  /**
+   * Kinds of catalog changes
+   */
+  public enum Type {
+    ADD, // the artwork was added to the catalog
+    BUY // the artwork was bought and removed from the catalog
+  }
+
+  private final long sequence; // sequence number of this event within its museum
+  private final Type type; // kind of change
+  private final Artwork artwork; // artwork which was added or bought
+
+  /**
+   * Creates a new catalog event
+   *
+   * @param sequence sequence number of this event within its museum
+   * @param type     kind of change
+   * @param artwork  artwork which was added or bought
+   */
+  public CatalogEvent(long sequence, Type type, Artwork artwork) {
+    this.sequence = sequence;
+    this.type = type;
+    this.artwork = artwork;
+  }
+
+  /**
+   * Gets the sequence number of this event
+   *
+   * @return the sequence number of this event within its museum
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Gets the kind of change of this event
+   *
+   * @return the type of this event
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Gets the artwork which was added or bought
+   *
+   * @return the artwork of this event
+   */
+  public Artwork getArtwork() {
+    return artwork;
+  }
+
+  /**
+   * Returns a String representation of this event
+   *
+   * @return this event as a String in the format "#sequence TYPE artwork"
+   */
+  public String toString() {
+    return "#" + sequence + " " + type + " " + artwork;
+  }
+}
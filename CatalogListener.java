@@ -0,0 +1,18 @@
+import java.util.List;
+
+/**
+ * Listener of the changes of the catalog of an ArtMuseum, registered with ArtMuseum.subscribe().
+ *
+ */
+public interface CatalogListener {
+
+  /**
+   * Receives a batch of catalog events. The events of a batch are in increasing sequence order,
+   * and batches are delivered in order. This method is called on the thread which changed the
+   * museum or flushed the subscription, so it should return quickly. A RuntimeException thrown by
+   * this method cancels the subscription, see CatalogSubscription.getFailure().
+   *
+   * @param events non-empty, unmodifiable list of consecutive events
+   */
+  void onEvents(List<CatalogEvent> events);
+}
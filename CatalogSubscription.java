@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Subscription of a CatalogListener to the changes of an ArtMuseum. Events are buffered and
+ * delivered to the listener in batches of batchSize events, or earlier when the subscription is
+ * flushed.
+ *
+ * A listener throwing a RuntimeException does not fail the change of the museum which delivered
+ * the batch, nor the other subscriptions. Its subscription is cancelled instead, and the exception
+ * is kept as the failure of the subscription.
+ *
+ */
+public class CatalogSubscription {
+  private final CatalogListener listener; // receiver of the batches of events
+  private final int batchSize; // number of events delivered at once
+  private ArrayList<CatalogEvent> pending; // events not yet delivered
+  private long lastDeliveredSequence; // sequence number of the last event delivered, 0 if none
+  private boolean cancelled; // true once this subscription was cancelled
+  private RuntimeException failure; // exception thrown by the listener, null if none
+
+  /**
+   * Creates a new subscription
+   *
+   * @param listener  receiver of the batches of events
+   * @param batchSize number of events delivered at once
+   * @throws NullPointerException     if listener is null
+   * @throws IllegalArgumentException if batchSize is not positive
+   */
+  public CatalogSubscription(CatalogListener listener, int batchSize) {
+    if (listener == null)
+      throw new NullPointerException("listener is null");
+    if (batchSize <= 0)
+      throw new IllegalArgumentException("Invalid batch size. It must be positive");
+    this.listener = listener;
+    this.batchSize = batchSize;
+    this.pending = new ArrayList<CatalogEvent>(batchSize);
+  }
+
+  /**
+   * Getter of the batch size of this subscription
+   *
+   * @return the number of events delivered at once
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Gets the sequence number of the last event delivered to the listener, which a subscriber can
+   * use to detect which changes it has applied
+   *
+   * @return the sequence number of the last delivered event, 0 if no event was delivered
+   */
+  public long getLastDeliveredSequence() {
+    return lastDeliveredSequence;
+  }
+
+  /**
+   * Checks whether this subscription was cancelled
+   *
+   * @return true if this subscription was cancelled, false otherwise
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Gets the exception thrown by the listener, which cancelled this subscription
+   *
+   * @return the exception thrown by the listener, or null if it never threw one
+   */
+  public RuntimeException getFailure() {
+    return failure;
+  }
+
+  /**
+   * Cancels this subscription. Pending events are dropped and no more events are delivered.
+   */
+  public void cancel() {
+    cancelled = true;
+    pending = new ArrayList<CatalogEvent>(0);
+  }
+
+  /**
+   * Delivers the pending events to the listener, if there are any. If the listener throws a
+   * RuntimeException, this subscription is cancelled and the exception is kept as its failure.
+   */
+  public void flush() {
+    if (cancelled || pending.isEmpty())
+      return;
+    // hand the buffer over to the listener and start a new one
+    ArrayList<CatalogEvent> batch = pending;
+    pending = new ArrayList<CatalogEvent>(batchSize);
+    lastDeliveredSequence = batch.get(batch.size() - 1).getSequence();
+    try {
+      listener.onEvents(Collections.unmodifiableList(batch));
+    } catch (RuntimeException e) {
+      // the museum was already changed, so the failure stays with this subscription
+      failure = e;
+      cancel();
+    }
+  }
+
+  /**
+   * Buffers an event, and delivers the pending events once a full batch is buffered
+   *
+   * @param event event to publish
+   */
+  protected void publish(CatalogEvent event) {
+    if (cancelled)
+      return;
+    pending.add(event);
+    if (pending.size() >= batchSize)
+      flush();
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * This class describes how ArtMuseum.query() runs an ArtworkQuery: the access path chosen by the
+ * planner, the number of artworks it expects to visit, and its estimated cost in node visits.
+ *
+ */
+public class QueryPlan {
+
+  /**
+   * Ways of reading the artworks of a museum
+   */
+  public enum AccessPath {
+    YEAR_RANGE_SCAN, // in-order traversal of the year range of the tree only
+    FULL_SCAN, // traversal of the whole tree on the calling thread
+    PARALLEL_FULL_SCAN // traversal of the whole tree, split by subtrees across threads
+  }
+
+  private final AccessPath accessPath; // access path chosen by the planner
+  private final long estimatedRows; // number of artworks the access path is expected to visit
+  private final double estimatedCost; // estimated cost of the access path, in node visits
+
+  /**
+   * Creates a query plan
+   *
+   * @param accessPath    access path chosen by the planner
+   * @param estimatedRows number of artworks the access path is expected to visit
+   * @param estimatedCost estimated cost of the access path, in node visits
+   */
+  public QueryPlan(AccessPath accessPath, long estimatedRows, double estimatedCost) {
+    this.accessPath = accessPath;
+    this.estimatedRows = estimatedRows;
+    this.estimatedCost = estimatedCost;
+  }
+
+  /**
+   * Gets the access path chosen by the planner
+   *
+   * @return the access path of this plan
+   */
+  public AccessPath getAccessPath() {
+    return accessPath;
+  }
+
+  /**
+   * Gets the number of artworks the access path is expected to visit
+   *
+   * @return the estimated number of rows
+   */
+  public long getEstimatedRows() {
+    return estimatedRows;
+  }
+
+  /**
+   * Gets the estimated cost of this plan, in node visits on the calling thread
+   *
+   * @return the estimated cost
+   */
+  public double getEstimatedCost() {
+    return estimatedCost;
+  }
+
+  /**
+   * Returns a String representation of this plan
+   *
+   * @return this plan as a String in the format "ACCESS_PATH (rows=N, cost=C)"
+   */
+  public String toString() {
+    return accessPath + " (rows=" + estimatedRows + ", cost=" + estimatedCost + ")";
+  }
+}
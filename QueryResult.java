@@ -0,0 +1,41 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the result of ArtMuseum.query(): the matching artworks, and the plan which was
+ * used to find them.
+ *
+ */
+public class QueryResult {
+  private final List<Artwork> artworks; // matching artworks, in increasing order
+  private final QueryPlan plan; // plan used to run the query
+
+  /**
+   * Creates a query result
+   *
+   * @param artworks matching artworks, in increasing order
+   * @param plan     plan used to run the query
+   */
+  public QueryResult(List<Artwork> artworks, QueryPlan plan) {
+    this.artworks = Collections.unmodifiableList(artworks);
+    this.plan = plan;
+  }
+
+  /**
+   * Gets the artworks matching the query
+   *
+   * @return an unmodifiable list of the matching artworks, in increasing order
+   */
+  public List<Artwork> getArtworks() {
+    return artworks;
+  }
+
+  /**
+   * Gets the plan which was used to run the query
+   *
+   * @return the query plan
+   */
+  public QueryPlan getPlan() {
+    return plan;
+  }
+}
@@ -0,0 +1,430 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class models an art museum whose catalog is partitioned by year of creation into shards.
+ * Each shard covers a range of years and is an independent ArtMuseum guarded by its own
+ * read-write lock, so that operations on different year ranges do not contend with each other.
+ * Range and aggregate queries fan out across the shards in parallel. A shard which grows too
+ * large or receives too many accesses is split at its median year.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class ShardedArtMuseum {
+  private final int yearsPerShard; // number of years covered by a newly created shard
+  private final int maxShardSize; // size above which a shard is split
+  private final long hotShardAccesses; // number of accesses above which a shard is split
+  // shards of this museum, indexed by their first year
+  private final ConcurrentSkipListMap<Integer, Shard> shards =
+    new ConcurrentSkipListMap<Integer, Shard>();
+  // guards the set of shards: held for reading by every operation, for writing by splits
+  private final ReentrantReadWriteLock topologyLock = new ReentrantReadWriteLock();
+
+  /**
+   * A shard of the catalog holding the artworks created between fromYear and toYear, inclusive
+   */
+  private static class Shard {
+    private final int fromYear; // first year covered by this shard
+    private final int toYear; // last year covered by this shard
+    private final ArtMuseum museum; // artworks of this shard
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // guards museum
+    private final AtomicLong accesses = new AtomicLong(); // accesses since this shard was created
+    // size above which this shard is split, raised when all its artworks share a year
+    private volatile int splitSize;
+
+    /**
+     * Creates a shard covering a range of years
+     *
+     * @param fromYear first year covered by the shard
+     * @param toYear   last year covered by the shard
+     * @param museum   artworks of the shard
+     * @param splitSize size above which the shard is split
+     */
+    private Shard(int fromYear, int toYear, ArtMuseum museum, int splitSize) {
+      this.fromYear = fromYear;
+      this.toYear = toYear;
+      this.museum = museum;
+      this.splitSize = splitSize;
+    }
+  }
+
+  /**
+   * Creates an empty sharded museum with one shard per decade, which splits shards holding more
+   * than 100000 artworks or accessed more than 10000000 times
+   */
+  public ShardedArtMuseum() {
+    this(10, 100_000, 10_000_000L);
+  }
+
+  /**
+   * Creates an empty sharded museum
+   *
+   * @param yearsPerShard    number of years covered by a newly created shard
+   * @param maxShardSize     size above which a shard is split at its median year
+   * @param hotShardAccesses number of accesses above which a shard is split at its median year
+   * @throws IllegalArgumentException if any of the parameters is not positive
+   */
+  public ShardedArtMuseum(int yearsPerShard, int maxShardSize, long hotShardAccesses) {
+    if (yearsPerShard <= 0 || maxShardSize <= 0 || hotShardAccesses <= 0)
+      throw new IllegalArgumentException("Invalid shard configuration. It must be positive");
+    this.yearsPerShard = yearsPerShard;
+    this.maxShardSize = maxShardSize;
+    this.hotShardAccesses = hotShardAccesses;
+  }
+
+  /**
+   * Returns the number of artwork pieces stored in this museum
+   *
+   * @return the size of this museum
+   */
+  public int size() {
+    topologyLock.readLock().lock();
+    try {
+      int size = 0;
+      for (Shard shard : shards.values()) {
+        shard.lock.readLock().lock();
+        try {
+          size += shard.museum.size();
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }
+      return size;
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of shards of this museum
+   *
+   * @return the number of shards
+   */
+  public int shardCount() {
+    return shards.size();
+  }
+
+  /**
+   * Adds a new artwork piece to this museum
+   *
+   * @param newArtwork a new Artwork to add to this museum
+   * @return true if the newArtwork was successfully added to this museum, and returns false if
+   *         there is a match with this Artwork already stored in this museum
+   * @throws NullPointerException if newArtwork is null
+   */
+  public boolean addArtwork(Artwork newArtwork) throws NullPointerException {
+    if (newArtwork == null)
+      throw new NullPointerException("newArtwork is null");
+    Shard shard;
+    boolean added;
+    int size;
+    topologyLock.readLock().lock();
+    try {
+      shard = shardFor(newArtwork.getYear(), true);
+      shard.lock.writeLock().lock();
+      try {
+        added = shard.museum.addArtwork(newArtwork);
+        size = shard.museum.size();
+      } finally {
+        shard.lock.writeLock().unlock();
+      }
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+    accessed(shard, size);
+    return added;
+  }
+
+  /**
+   * Checks whether this museum contains a Artwork given its name, year, and cost
+   *
+   * @param name name of the Artwork to search
+   * @param year year of creation of the Artwork to search
+   * @param cost cost of the Artwork to search
+   * @return true if there is a match with this Artwork in this museum, and false otherwise
+   */
+  public boolean lookup(String name, int year, double cost) {
+    Shard shard;
+    boolean found;
+    int size;
+    topologyLock.readLock().lock();
+    try {
+      shard = shardFor(year, false);
+      if (shard == null)
+        return false;
+      shard.lock.readLock().lock();
+      try {
+        found = shard.museum.lookup(name, year, cost);
+        size = shard.museum.size();
+      } finally {
+        shard.lock.readLock().unlock();
+      }
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+    accessed(shard, size);
+    return found;
+  }
+
+  /**
+   * Search for all artwork objects created on a given year and have a maximum cost value
+   *
+   * @param year creation year of artwork
+   * @param cost the maximum cost we would like to search for a artwork
+   * @return a list of all the artwork objects whose year equals our lookup year key and maximum
+   *         cost. If no artwork satisfies the lookup query, this method returns an empty arraylist
+   */
+  public ArrayList<Artwork> lookupAll(int year, double cost) {
+    Shard shard;
+    ArrayList<Artwork> result;
+    int size;
+    topologyLock.readLock().lock();
+    try {
+      shard = shardFor(year, false);
+      if (shard == null)
+        return new ArrayList<Artwork>();
+      shard.lock.readLock().lock();
+      try {
+        result = shard.museum.lookupAll(year, cost);
+        size = shard.museum.size();
+      } finally {
+        shard.lock.readLock().unlock();
+      }
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+    accessed(shard, size);
+    return result;
+  }
+
+  /**
+   * Buy an artwork with the specified name, year and cost
+   *
+   * @param name name of the artwork, artist
+   * @param year creation year of artwork
+   * @param cost cost of the artwork
+   * @throws NoSuchElementException with a descriptive error message if there is no Artwork found
+   *           with the buying criteria
+   */
+  public void buyArtwork(String name, int year, double cost) throws NoSuchElementException {
+    Shard shard;
+    int size;
+    topologyLock.readLock().lock();
+    try {
+      shard = shardFor(year, false);
+      if (shard == null)
+        throw new NoSuchElementException("No Artwork is found with the buying criteria in tree");
+      shard.lock.writeLock().lock();
+      try {
+        shard.museum.buyArtwork(name, year, cost);
+        size = shard.museum.size();
+      } finally {
+        shard.lock.writeLock().unlock();
+      }
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+    accessed(shard, size);
+  }
+
+  /**
+   * Gets the best (largest) artwork of this museum, which is the best artwork of the last
+   * non-empty shard
+   *
+   * @return the best Artwork of this museum, and null if this museum is empty
+   */
+  public Artwork getBestArtwork() {
+    topologyLock.readLock().lock();
+    try {
+      for (Shard shard : shards.descendingMap().values()) {
+        shard.lock.readLock().lock();
+        try {
+          if (!shard.museum.isEmpty())
+            return shard.museum.getBestArtwork();
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }
+      return null;
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the artworks created between two years, both inclusive. The shards overlapping the
+   * range are counted in parallel.
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the number of artworks whose year is within [fromYear, toYear]
+   */
+  public int count(int fromYear, int toYear) {
+    if (fromYear > toYear)
+      return 0;
+    topologyLock.readLock().lock();
+    try {
+      return shardsBetween(fromYear, toYear).parallelStream().mapToInt(shard -> {
+        shard.lock.readLock().lock();
+        try {
+          return shard.museum.count(fromYear, toYear);
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }).sum();
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Computes the total value of the artworks created between two years, both inclusive. The
+   * shards overlapping the range are summed in parallel.
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the total cost of the artworks whose year is within [fromYear, toYear]
+   */
+  public double totalValue(int fromYear, int toYear) {
+    if (fromYear > toYear)
+      return 0.0;
+    topologyLock.readLock().lock();
+    try {
+      return shardsBetween(fromYear, toYear).parallelStream().mapToDouble(shard -> {
+        shard.lock.readLock().lock();
+        try {
+          return shard.museum.totalValue(fromYear, toYear);
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }).sum();
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a String representation of all the artwork stored within this museum in increasing
+   * order, in the same format as ArtMuseum.toString()
+   *
+   * @return a String representation of all the artworks of this museum sorted in an increasing
+   *         order, or an empty string "" if this museum is empty
+   */
+  @Override
+  public String toString() {
+    topologyLock.readLock().lock();
+    try {
+      StringBuilder output = new StringBuilder();
+      for (Shard shard : shards.values()) {
+        shard.lock.readLock().lock();
+        try {
+          for (Artwork artwork : shard.museum)
+            output.append(artwork.toString()).append("\n");
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }
+      return output.toString();
+    } finally {
+      topologyLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the shard covering a given year. The caller must hold the topology lock.
+   *
+   * @param year   year to find the shard of
+   * @param create true to create the shard if no shard covers year yet
+   * @return the shard covering year, or null if there is none and create is false
+   */
+  private Shard shardFor(int year, boolean create) {
+    Map.Entry<Integer, Shard> entry = shards.floorEntry(year);
+    if (entry != null && year <= entry.getValue().toYear)
+      return entry.getValue();
+    if (!create)
+      return null;
+    // shards are only ever split, so no part of the aligned range of an uncovered year is covered
+    int fromYear = Math.floorDiv(year, yearsPerShard) * yearsPerShard;
+    int toYear = (int) Math.min((long) fromYear + yearsPerShard - 1, Integer.MAX_VALUE);
+    Shard shard = new Shard(fromYear, toYear, new ArtMuseum(), maxShardSize);
+    Shard previous = shards.putIfAbsent(fromYear, shard);
+    return previous == null ? shard : previous;
+  }
+
+  /**
+   * Gets the shards overlapping a range of years. The caller must hold the topology lock.
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the shards covering at least one year within [fromYear, toYear]
+   */
+  private Collection<Shard> shardsBetween(int fromYear, int toYear) {
+    Integer first = shards.floorKey(fromYear);
+    return shards.subMap(first == null ? fromYear : first, true, toYear, true).values();
+  }
+
+  /**
+   * Records an access to a shard and splits it if it became too large or too hot
+   *
+   * @param shard shard which was accessed
+   * @param size  size of the shard, read under its lock during the access
+   */
+  private void accessed(Shard shard, int size) {
+    long accesses = shard.accesses.incrementAndGet();
+    if (accesses > hotShardAccesses || size > shard.splitSize)
+      split(shard);
+  }
+
+  /**
+   * Splits a shard at its median year into two shards. Nothing is done if the shard was already
+   * replaced, or if all its artworks were created in the same year. In the latter case, the shard
+   * is not split again for its size until it doubled, so that every access does not rescan it.
+   *
+   * @param shard shard to split
+   */
+  private void split(Shard shard) {
+    topologyLock.writeLock().lock();
+    try {
+      if (shards.get(shard.fromYear) != shard)
+        return; // already split by another thread
+      int splitYear = shard.museum.isEmpty() ? shard.fromYear : splitYear(shard.museum);
+      if (splitYear <= shard.fromYear) {
+        // cannot split a single year, only start counting the accesses again
+        shard.accesses.set(0);
+        int size = shard.museum.size();
+        if (size > shard.splitSize)
+          shard.splitSize = size > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * size;
+        return;
+      }
+      ArtMuseum[] halves = shard.museum.splitAtYear(splitYear);
+      shards.put(shard.fromYear,
+        new Shard(shard.fromYear, splitYear - 1, halves[0], maxShardSize));
+      shards.put(splitYear, new Shard(splitYear, shard.toYear, halves[1], maxShardSize));
+    } finally {
+      topologyLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Chooses the year at which to split a museum: the year of its median artwork, or the next year
+   * present if the median artwork has the smallest year
+   *
+   * @param museum non-empty museum to split
+   * @return the first year of the upper half, or the smallest year if all artworks share it
+   */
+  private static int splitYear(ArtMuseum museum) {
+    int firstYear = museum.getOldestArtwork().getYear();
+    int index = 0;
+    for (Artwork artwork : museum) {
+      if (index++ >= museum.size() / 2 && artwork.getYear() > firstYear)
+        return artwork.getYear();
+    }
+    return firstYear;
+  }
+}
@@ -0,0 +1,207 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class keeps the number of artworks and their total value per year of creation. Per-year
+ * counts and values are read in O(1) time, and ranges of years are summed in O(log Y) time, where Y
+ * is the span of years, with a Fenwick tree (binary indexed tree) over the years.
+ *
+ * Years from 1000 (the oldest year accepted by Artwork) are kept in growable dense arrays, up to
+ * MAX_DENSE_YEARS years. The rare later years are kept in a sorted map, so that an outlying year
+ * does not allocate arrays spanning all the years in between.
+ *
+ * Values are accumulated as doubles, so they are exact up to floating point rounding.
+ *
+ */
+public class YearHistogram {
+  private static final int FIRST_YEAR = 1000; // first year of the dense arrays
+  public static final int MAX_DENSE_YEARS = 1 << 16; // maximum span of the dense arrays
+
+  private int[] counts = new int[0]; // number of artworks per year, indexed by year - FIRST_YEAR
+  private double[] values = new double[0]; // total value per year, indexed by year - FIRST_YEAR
+  private int[] countTree = new int[1]; // Fenwick tree of counts, 1-based
+  private double[] valueTree = new double[1]; // Fenwick tree of values, 1-based
+  // {count, value} of the years beyond the dense arrays
+  private final TreeMap<Integer, double[]> sparse = new TreeMap<Integer, double[]>();
+
+  /**
+   * Gets the number of artworks created in a given year, in O(1) time for dense years
+   *
+   * @param year year of creation
+   * @return the number of artworks created in year
+   */
+  public int count(int year) {
+    int index = year - FIRST_YEAR;
+    if (index >= 0 && index < counts.length)
+      return counts[index];
+    double[] entry = index >= MAX_DENSE_YEARS ? sparse.get(year) : null;
+    return entry == null ? 0 : (int) entry[0];
+  }
+
+  /**
+   * Gets the total value of the artworks created in a given year, in O(1) time for dense years
+   *
+   * @param year year of creation
+   * @return the total cost of the artworks created in year
+   */
+  public double value(int year) {
+    int index = year - FIRST_YEAR;
+    if (index >= 0 && index < values.length)
+      return values[index];
+    double[] entry = index >= MAX_DENSE_YEARS ? sparse.get(year) : null;
+    return entry == null ? 0.0 : entry[1];
+  }
+
+  /**
+   * Counts the artworks created between two years, both inclusive, in O(log Y) time
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the number of artworks created within [fromYear, toYear]
+   */
+  public int count(int fromYear, int toYear) {
+    if (fromYear > toYear)
+      return 0;
+    int total = prefixCount(denseEnd(toYear)) - prefixCount(denseEnd(fromYear - 1L));
+    for (double[] entry : sparseBetween(fromYear, toYear).values())
+      total += (int) entry[0];
+    return total;
+  }
+
+  /**
+   * Computes the total value of the artworks created between two years, both inclusive, in
+   * O(log Y) time
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the total cost of the artworks created within [fromYear, toYear]
+   */
+  public double value(int fromYear, int toYear) {
+    if (fromYear > toYear)
+      return 0.0;
+    double total = prefixValue(denseEnd(toYear)) - prefixValue(denseEnd(fromYear - 1L));
+    for (double[] entry : sparseBetween(fromYear, toYear).values())
+      total += entry[1];
+    return total;
+  }
+
+  /**
+   * Records an artwork added to the catalog
+   *
+   * @param artwork artwork which was added
+   */
+  void add(Artwork artwork) {
+    update(artwork.getYear(), 1, artwork.getCost());
+  }
+
+  /**
+   * Records an artwork removed from the catalog
+   *
+   * @param artwork artwork which was removed
+   */
+  void remove(Artwork artwork) {
+    update(artwork.getYear(), -1, -artwork.getCost());
+  }
+
+  /**
+   * Adds a count and a value to a year
+   *
+   * @param year  year of creation
+   * @param count number of artworks to add, negative to remove
+   * @param value value to add, negative to remove
+   */
+  private void update(int year, int count, double value) {
+    int index = year - FIRST_YEAR;
+    if (index >= MAX_DENSE_YEARS) {
+      double[] entry = sparse.computeIfAbsent(year, key -> new double[2]);
+      entry[0] += count;
+      entry[1] += value;
+      if (entry[0] == 0)
+        sparse.remove(year);
+      return;
+    }
+    if (index >= counts.length)
+      grow(index + 1);
+    counts[index] += count;
+    values[index] += value;
+    for (int i = index + 1; i < countTree.length; i += i & -i) {
+      countTree[i] += count;
+      valueTree[i] += value;
+    }
+  }
+
+  /**
+   * Grows the dense arrays to hold at least a given number of years, and rebuilds the Fenwick
+   * trees in linear time
+   *
+   * @param years number of years needed
+   */
+  private void grow(int years) {
+    int length = Math.min(Math.max(years, 2 * counts.length), MAX_DENSE_YEARS);
+    int[] newCounts = new int[length];
+    double[] newValues = new double[length];
+    System.arraycopy(counts, 0, newCounts, 0, counts.length);
+    System.arraycopy(values, 0, newValues, 0, values.length);
+    counts = newCounts;
+    values = newValues;
+    countTree = new int[length + 1];
+    valueTree = new double[length + 1];
+    for (int i = 1; i <= length; i++) {
+      countTree[i] += counts[i - 1];
+      valueTree[i] += values[i - 1];
+      int parent = i + (i & -i);
+      if (parent <= length) {
+        countTree[parent] += countTree[i];
+        valueTree[parent] += valueTree[i];
+      }
+    }
+  }
+
+  /**
+   * Gets the number of dense years up to a given year, which is the prefix length of the Fenwick
+   * trees covering it
+   *
+   * @param year last year, inclusive
+   * @return the number of dense years from FIRST_YEAR to year
+   */
+  private int denseEnd(long year) {
+    return (int) Math.max(0, Math.min(year - FIRST_YEAR + 1, counts.length));
+  }
+
+  /**
+   * Sums the counts of the first years of the dense arrays
+   *
+   * @param length number of years to sum
+   * @return the number of artworks created in these years
+   */
+  private int prefixCount(int length) {
+    int total = 0;
+    for (int i = length; i > 0; i -= i & -i)
+      total += countTree[i];
+    return total;
+  }
+
+  /**
+   * Sums the values of the first years of the dense arrays
+   *
+   * @param length number of years to sum
+   * @return the total value of the artworks created in these years
+   */
+  private double prefixValue(int length) {
+    double total = 0.0;
+    for (int i = length; i > 0; i -= i & -i)
+      total += valueTree[i];
+    return total;
+  }
+
+  /**
+   * Gets the sparse years within a range
+   *
+   * @param fromYear first year of the range
+   * @param toYear   last year of the range
+   * @return the entries of the sparse years within [fromYear, toYear]
+   */
+  private Map<Integer, double[]> sparseBetween(int fromYear, int toYear) {
+    return sparse.subMap(fromYear, true, toYear, true);
+  }
+}